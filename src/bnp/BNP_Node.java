@@ -1,6 +1,7 @@
 package bnp;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,9 +18,12 @@ import util.Triple;
 public class BNP_Node {
 	
 	private Map<Location,ConnectionNetwork> pricingGraphs;
-	private Map<Location,List<CN_Arc>> atLB;
+	private Map<Location,BitSet> atLB; //per depot, the indices of the arcs that are fixed to zero
 	private double lb;
-	private double optValue;
+	private double optValue; //objective of the master at the end of the column generation
+	private double bound; //valid lower bound of the node, below optValue if the column generation stopped early
+	private boolean prunedByBound; //the Lagrangian bound showed that the node cannot improve the upper bound
+	private MasterBasis basis; //the basis of the master of the parent, replaced by its own once the node is solved
 	private final int depth;
 	private final String id;
 	
@@ -35,7 +39,7 @@ public class BNP_Node {
 		this.lb = 0;
 		this.atLB = new LinkedHashMap<>();
 		for(Location d: pricingGraphs.keySet()) {
-			atLB.put(d, new ArrayList<>());
+			atLB.put(d, new BitSet(pricingGraphs.get(d).getNumArcIndices()));
 		}
 		this.depth = 0;
 		this.down = new ArrayList<>();
@@ -43,14 +47,15 @@ public class BNP_Node {
 		this.id = "R";
 	}
 	
-	public BNP_Node(Map<Location, List<CN_Arc>> atLB_copy, BNP_Node parent, List<Pair<Location, CN_Arc>> downCopy, List<Pair<Location, CN_Arc>> upCopy, String dir) {
+	public BNP_Node(Map<Location, BitSet> atLB_copy, BNP_Node parent, List<Pair<Location, CN_Arc>> downCopy, List<Pair<Location, CN_Arc>> upCopy, String dir) {
 		this.atLB = atLB_copy;
-		this.lb = parent.getOptValue();
+		this.lb = parent.getBound();
 		this.pricingGraphs = parent.pricingGraphs;
 		this.depth = parent.depth + 1;
 		this.down = downCopy;
 		this.up = upCopy;
 		this.id = parent.id+"-"+dir;
+		this.basis = parent.basis;
 	}
 
 	public void setOptValue(double masterCost) {
@@ -59,14 +64,14 @@ public class BNP_Node {
 	
 	public BNP_Node getDownBranchColor(Triple<Location, Location, Trip> color) {
 		Trip t = color.getC();
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
+		Map<Location,BitSet> atLB_copy = getMapCopy();
 		
 		for(Location depot: pricingGraphs.keySet()) {
 			if(depot.equals(color.getA())||depot.equals(color.getB())) {
 				for(DirectedGraphArc<CN_Node, CN_Arc> arc: pricingGraphs.get(depot).getArcs()) {
 					CN_Arc a = arc.getData();
 					if(t.equals(a.getFrom().getTrip())||t.equals(a.getTo().getTrip())) {
-						atLB_copy.get(depot).add(a);
+						atLB_copy.get(depot).set(a.getIndex());
 					}
 				}
 
@@ -77,14 +82,14 @@ public class BNP_Node {
 	
 	public BNP_Node getUpBranchColor(Triple<Location, Location, Trip> color) {
 		Trip t = color.getC();
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
+		Map<Location,BitSet> atLB_copy = getMapCopy();
 		
 		for(Location depot: pricingGraphs.keySet()) {
 			if(!depot.equals(color.getA())&&!depot.equals(color.getB())) {
 				for(DirectedGraphArc<CN_Node, CN_Arc> arc: pricingGraphs.get(depot).getArcs()) {
 					CN_Arc a = arc.getData();
 					if(t.equals(a.getFrom().getTrip())||t.equals(a.getTo().getTrip())) {
-						atLB_copy.get(depot).add(a);
+						atLB_copy.get(depot).set(a.getIndex());
 					}
 				}
 
@@ -95,9 +100,9 @@ public class BNP_Node {
 	
 	public BNP_Node getDownBranch(Triple<Location, Location, CN_Arc> interTask) {
 
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
-		atLB_copy.get(interTask.getA()).add(interTask.getC());
-		atLB_copy.get(interTask.getB()).add(interTask.getC());
+		Map<Location,BitSet> atLB_copy = getMapCopy();
+		atLB_copy.get(interTask.getA()).set(interTask.getC().getIndex());
+		atLB_copy.get(interTask.getB()).set(interTask.getC().getIndex());
 		return new BNP_Node(atLB_copy,this,down,up,"D"); 
 	}
 	
@@ -109,8 +114,8 @@ public class BNP_Node {
 			}
 			throw new Error("Already have this down branch");
 		}
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
-		atLB_copy.get(branchVariable.getA()).add(branchVariable.getB());
+		Map<Location,BitSet> atLB_copy = getMapCopy();
+		atLB_copy.get(branchVariable.getA()).set(branchVariable.getB().getIndex());
 		
 
 		List<Pair<Location,CN_Arc>> downCopy = new ArrayList<>(down);
@@ -118,10 +123,10 @@ public class BNP_Node {
 		return new BNP_Node(atLB_copy,this,downCopy,up,"D");
 	}
 
-	private Map<Location, List<CN_Arc>> getMapCopy() {
-		Map<Location, List<CN_Arc>> copy = new LinkedHashMap<>();
+	private Map<Location, BitSet> getMapCopy() {
+		Map<Location, BitSet> copy = new LinkedHashMap<>();
 		for(Location d: pricingGraphs.keySet()) {
-			copy.put(d, new ArrayList<>(atLB.get(d)));
+			copy.put(d, (BitSet) atLB.get(d).clone());
 		}
 		return copy;
 	}
@@ -132,7 +137,7 @@ public class BNP_Node {
 		}
 		Location depotBranch = pair.getA();
 		CN_Arc branchVariable = pair.getB();
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
+		Map<Location,BitSet> atLB_copy = getMapCopy();
 		
 		//suppose it is an arc to trip j, then all other arcs to trip are forbidden
 		for(Location depot: pricingGraphs.keySet()) {
@@ -154,13 +159,13 @@ public class BNP_Node {
 					if(c_arc.getType()==0) {
 						//trip arc, can only stay if both are the same
 						if(!sameTail||!sameHead) {
-							atLB_copy.get(depot).add(c_arc);
+							atLB_copy.get(depot).set(c_arc.getIndex());
 						} 
 					} 
 					
 				} else {
 					//the depots don't match, should always set flow to 0
-					atLB_copy.get(depot).add(c_arc);
+					atLB_copy.get(depot).set(c_arc.getIndex());
 				}
 			}
 			
@@ -175,7 +180,7 @@ public class BNP_Node {
 		Location depotBranch1 = interTask.getA();
 		Location depotBranch2 = interTask.getB();
 		CN_Arc branchVariable = interTask.getC();
-		Map<Location,List<CN_Arc>> atLB_copy = getMapCopy();
+		Map<Location,BitSet> atLB_copy = getMapCopy();
 		
 		//suppose it is an arc to trip j, then all other arcs to trip are forbidden
 		for(Location depot: pricingGraphs.keySet()) {
@@ -197,13 +202,13 @@ public class BNP_Node {
 					if(c_arc.getType()==0) {
 						//trip arc, can only stay if both are the same
 						if(!sameTail||!sameHead) {
-							atLB_copy.get(depot).add(c_arc);
+							atLB_copy.get(depot).set(c_arc.getIndex());
 						} 
 					} 
 					
 				} else {
 					//the depots don't match, should always set flow to 0
-					atLB_copy.get(depot).add(c_arc);
+					atLB_copy.get(depot).set(c_arc.getIndex());
 				}
 			}
 			
@@ -218,7 +223,7 @@ public class BNP_Node {
 		return "BNP_Node [id="+id+" depth=" + depth + ", down=" + down + ", up=" + up + "]";
 	}
 
-	public Map<Location, List<CN_Arc>> getAtLowerBound() {
+	public Map<Location, BitSet> getAtLowerBound() {
 		return atLB;
 	}
 
@@ -230,12 +235,36 @@ public class BNP_Node {
 		return optValue;
 	}
 
+	public double getBound() {
+		return bound;
+	}
+
+	public void setBound(double bound) {
+		this.bound = bound;
+	}
+
+	public boolean isPrunedByBound() {
+		return prunedByBound;
+	}
+
+	public void setPrunedByBound(boolean prunedByBound) {
+		this.prunedByBound = prunedByBound;
+	}
+
+	public MasterBasis getBasis() {
+		return basis;
+	}
+
+	public void setBasis(MasterBasis basis) {
+		this.basis = basis;
+	}
+
 	public int getDepth() {
 		return depth;
 	}
 
 	public void addToLB(Pair<Location, CN_Arc> toFix) {
-		atLB.get(toFix.getA()).add(toFix.getB());
+		atLB.get(toFix.getA()).set(toFix.getB().getIndex());
 	}
 
 
@@ -7,6 +7,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import ddd.Duty;
 import ilog.concert.IloException;
@@ -28,6 +33,16 @@ public class BranchAndPrice {
 	private final MasterProblem master;
 	private final Map<Location,ConnectionNetwork> pricingGraphs;
 	private Map<Location,ShortestPathWithResources> pricingProblems;
+	private final int threads; //workers for the pricing problems, at most one per depot
+	private ExecutorService pricingWorkers;
+	private int labelingThreads = 1; //threads per depot that label the waves of a network, 1 for sequential labeling
+	private ForkJoinPool labelingPool;
+	private PricingStrategy pricingStrategy;
+	private DualStabilizer stabilizer; //null for no stabilisation
+	private int iterationsRoot;
+	private Map<Trip,Double> pricedDuals; //the duals of the current arc costs, null for Farkas duals
+	private int nrPrunedByBound;
+	private int nrEarlyTerminations;
 	
 	private Set<Route> addedRoutes;
 	private double rootBound;
@@ -37,6 +52,7 @@ public class BranchAndPrice {
 	private double timeRoot;
 	private double timePricing;
 	private double timeMaster;
+	private double timeMasterSetup; //setting the branching decisions in the master
 	private int nrNodes;
 	
 	public BranchAndPrice(Instance inst,double timeLimit) throws IloException {
@@ -53,6 +69,8 @@ public class BranchAndPrice {
 			pricingProblems.put(depot, new ShortestPathWithResources(cN,inst.getMaxDeviation()));
 		}
 		this.pricingGraphs = thePricingGraphs;
+		this.threads = Math.min(inst.getDepots().size(), Runtime.getRuntime().availableProcessors());
+		this.pricingStrategy = new PricingStrategy();
 	}
 	
 	public void addInitialColumns() throws IloException {
@@ -86,67 +104,101 @@ public class BranchAndPrice {
 		nodeList.add(root);
 		nrNodes = 0;
 		
-		while(!nodeList.isEmpty() && runTime<this.timeLimit) {
-			//we always select node with lowest bound
-			BNP_Node toSolve = nodeList.get(0);	
-			globalLB = toSolve.getLB();
-			
-			System.out.println("\n Global LB = "+globalLB+" globalUB="+globalUB+" nr unexplored nodes: "+nodeList.size() +" depth curnode: "+toSolve.getDepth());
-			System.out.println("Solving: "+toSolve);
-			if(globalUB-globalLB<0.99) {
-				break;
-			}
-			solve(toSolve,this.timeLimit-runTime);
-			if(toSolve.getOptValue()==Double.MAX_VALUE) {
-				// it was a time out
-				break;
+		if(labelingThreads>1) {
+			labelingPool = new ForkJoinPool(labelingThreads*threads);
+			for(ShortestPathWithResources dK: pricingProblems.values()) {
+				dK.setLabelingPool(labelingPool);
 			}
-			nrNodes++;
-			if(nrNodes==1) {
-				timeRoot = 1e-3*(System.currentTimeMillis()-startTime);
-				rootBound = toSolve.getOptValue();
-			}
-			System.out.println("Finished solving node");
-			nodeList.remove(0);
-			
-			//try intertask branching second
-			Triple<Location,Location,Trip> color = master.getColorBranching();
-			//try intertask branching second
-			Triple<Location,Location,CN_Arc> interTask = master.getInterTaskBranching();
-			//get the most fractional variable
-			Pair<Location,CN_Arc> fracPair = master.getMostFractionalArc();
+		}
+		try {
+			while(!nodeList.isEmpty() && runTime<this.timeLimit) {
+				//we always select node with lowest bound
+				BNP_Node toSolve = nodeList.get(0);	
+				globalLB = toSolve.getLB();
 			
-			//check if the solution is integer
-			if(fracPair == null) {
-				//solution integer, found new upper bound
-				double newUB = toSolve.getOptValue();
-				if(newUB<globalUB) {
-					globalUB = newUB;
-					System.out.println("Found new global best upper bound: "+newUB);
+				System.out.println("\n Global LB = "+globalLB+" globalUB="+globalUB+" nr unexplored nodes: "+nodeList.size() +" depth curnode: "+toSolve.getDepth());
+				System.out.println("Solving: "+toSolve);
+				if(globalUB-globalLB<0.99) {
+					break;
 				}
-				if(nodeList.isEmpty()) {
-					System.out.println("Finished exploring tree");
-					globalLB = globalUB;
+				solve(toSolve,this.timeLimit-runTime);
+				if(toSolve.getOptValue()==Double.MAX_VALUE) {
+					// it was a time out
+					break;
 				}
-			} else {
-				//should branch
-				if(color!=null) {
-					System.out.println("Branch on color ("+color.getA().getIndex()+","+color.getB().getIndex()+","+color.getC());
-					nodeList.add(toSolve.getDownBranchColor(color));
-					nodeList.add(toSolve.getUpBranchColor(color));
-				} else if(interTask!=null) {
-					System.out.println("Branch on intertask ("+interTask.getA().getIndex()+","+interTask.getB().getIndex()+","+interTask.getC());
-					nodeList.add(toSolve.getDownBranch(interTask));
-					nodeList.add(toSolve.getUpBranch(interTask));
+				nrNodes++;
+				if(nrNodes==1) {
+					timeRoot = 1e-3*(System.currentTimeMillis()-startTime);
+					rootBound = toSolve.getBound();
+					printPricingStatistics();
+				}
+				System.out.println("Finished solving node");
+				nodeList.remove(0);
+				if(toSolve.isPrunedByBound()) {
+					System.out.println("Pruned by the Lagrangian bound "+toSolve.getBound());
+					if(nodeList.isEmpty()) {
+						System.out.println("Finished exploring tree");
+						globalLB = globalUB;
+					}
+					runTime = 1e-3*(System.currentTimeMillis()-startTime);
+					continue;
+				}
+			
+				//the children warm start from the basis of the master at the end of this node
+				if(master.isFeasible()) {
+					toSolve.setBasis(master.getBasis());
+				}
+				//try intertask branching second
+				Triple<Location,Location,Trip> color = master.getColorBranching();
+				//try intertask branching second
+				Triple<Location,Location,CN_Arc> interTask = master.getInterTaskBranching();
+				//get the most fractional variable
+				Pair<Location,CN_Arc> fracPair = master.getMostFractionalArc();
+			
+				//check if the solution is integer
+				if(fracPair == null) {
+					//solution integer, found new upper bound
+					double newUB = toSolve.getOptValue();
+					if(newUB<globalUB) {
+						globalUB = newUB;
+						System.out.println("Found new global best upper bound: "+newUB);
+					}
+					if(nodeList.isEmpty()) {
+						System.out.println("Finished exploring tree");
+						globalLB = globalUB;
+					}
 				} else {
-					System.out.println("Branch on depot "+fracPair.getA().getIndex()+" and arc "+fracPair.getB());
-					nodeList.add(toSolve.getDownBranch(fracPair));
-					nodeList.add(toSolve.getUpBranch(fracPair));
+					//should branch
+					if(color!=null) {
+						System.out.println("Branch on color ("+color.getA().getIndex()+","+color.getB().getIndex()+","+color.getC());
+						nodeList.add(toSolve.getDownBranchColor(color));
+						nodeList.add(toSolve.getUpBranchColor(color));
+					} else if(interTask!=null) {
+						System.out.println("Branch on intertask ("+interTask.getA().getIndex()+","+interTask.getB().getIndex()+","+interTask.getC());
+						nodeList.add(toSolve.getDownBranch(interTask));
+						nodeList.add(toSolve.getUpBranch(interTask));
+					} else {
+						System.out.println("Branch on depot "+fracPair.getA().getIndex()+" and arc "+fracPair.getB());
+						nodeList.add(toSolve.getDownBranch(fracPair));
+						nodeList.add(toSolve.getUpBranch(fracPair));
+					}
 				}
-			}
-			Collections.sort(nodeList, (o1, o2) -> Double.compare(o1.getLB()-1e-3*o1.getDepth(),o2.getLB()-1e-3*o2.getDepth()));
+				Collections.sort(nodeList, (o1, o2) -> Double.compare(o1.getLB()-1e-3*o1.getDepth(),o2.getLB()-1e-3*o2.getDepth()));
 			
-			runTime = 1e-3*(System.currentTimeMillis()-startTime);
+				runTime = 1e-3*(System.currentTimeMillis()-startTime);
+			}
+		} finally {
+			if(pricingWorkers!=null) {
+				pricingWorkers.shutdown();
+				pricingWorkers = null;
+			}
+			if(labelingPool!=null) {
+				labelingPool.shutdown();
+				labelingPool = null;
+				for(ShortestPathWithResources dK: pricingProblems.values()) {
+					dK.setLabelingPool(null);
+				}
+			}
 		}
 		//System.out.println("Final LB: "+globalLB + " final ")
 		timeTotal = 1e-3*(System.currentTimeMillis()-startTime);
@@ -162,10 +214,18 @@ public class BranchAndPrice {
 		double startTime = System.currentTimeMillis();
 		double runTime = 0;
 		//branch in the master and pricing problem
+		double startTimeSetup = System.currentTimeMillis();
 		master.setBounds(toSolve);
+		timeMasterSetup += 1e-3*(System.currentTimeMillis()-startTimeSetup);
 		for(Location depot: inst.getDepots()) {
 			pricingProblems.get(depot).setForbiddenArcs(toSolve.getAtLowerBound().get(depot));
 		}
+		pricingStrategy.reset();
+		if(stabilizer!=null) {
+			stabilizer.reset();
+		}
+		double nodeBound = toSolve.getLB();
+		boolean stoppedEarly = false;
 		while(!optimal&&runTime<localTimeLimit) {
 			optimal = true;
 			double startTimeMaster = System.currentTimeMillis();
@@ -173,12 +233,17 @@ public class BranchAndPrice {
 			timeMaster += 1e-3*(System.currentTimeMillis()-startTimeMaster);
 			
 			//update the pricing problem
+			boolean stabilized = false;
+			Map<Trip,Double> duals;
 			if(master.isFeasible()) {
 				masterCost = master.getObj();
 				//System.out.println("Solved master with objective "+master.getObj());
-				Map<Trip,Double> duals = master.getDuals();
-				for(ConnectionNetwork cN: pricingGraphs.values()) {
-					cN.updateCosts(duals, true);
+				duals = master.getDuals();
+				stabilized = stabilizer!=null;
+				if(stabilized) {
+					stabilizer.setOutPoint(duals);
+				} else {
+					updateCosts(duals, true);
 				}
 				
 				//check column management
@@ -196,49 +261,285 @@ public class BranchAndPrice {
 			} else {
 				System.out.println("Master infeasible");
 				masterCost = Double.MAX_VALUE;
-				Map<Trip,Double> duals = master.getFarkasDuals();
+				duals = master.getFarkasDuals();
 				System.out.println("Retrieved duals");
-				for(ConnectionNetwork cN: pricingGraphs.values()) {
-					cN.updateCosts(duals, false);
-				}
+				updateCosts(duals, false);
 			}
 			
 			
 			//solve the pricing problem
-			for(Location depot: inst.getDepots()) {
-				ShortestPathWithResources dK = pricingProblems.get(depot); 
-				
-				double startTimePricing = System.currentTimeMillis();
-				dK.computeDistances();
-				timePricing += 1e-3*(System.currentTimeMillis()-startTimePricing);
-				double redCost = dK.getDistance();
-				//System.out.println("Found negative reduced cost: "+redCost);
-				if(redCost<-1e-4) {
+			double startTimePricing = System.currentTimeMillis();
+			List<List<Route>> newRoutes = stabilized ? priceStabilized(duals, masterCost) : priceWithStrategy();
+			timePricing += 1e-3*(System.currentTimeMillis()-startTimePricing);
+			iteration++;
+			
+			//the Lagrangian bound can prune the node, or show that the master is good enough
+			boolean penalised = stabilized&&stabilizer.isBoxActive();
+			boolean exactAtDuals = pricedDuals==duals&&pricingProblems.values().iterator().next().isExact();
+			if(master.isFeasible()&&!penalised&&exactAtDuals) {
+				nodeBound = Math.max(nodeBound, getLagrangianBound(masterCost));
+			}
+			if(stabilized) {
+				nodeBound = Math.max(nodeBound, stabilizer.getCenterBound());
+			}
+			if(nodeBound>globalUB-1+1e-6) {
+				toSolve.setPrunedByBound(true);
+				break;
+			}
+			if(master.isFeasible()&&!penalised&&Math.ceil(nodeBound-1e-6)>=Math.ceil(masterCost-1e-6)) {
+				//with integer costs, the remaining iterations cannot change the rounded bound of the node
+				nrEarlyTerminations++;
+				stoppedEarly = true;
+				break;
+			}
+			for(List<Route> routes: newRoutes) {
+				if(!routes.isEmpty()) {
 					//found negative reduced column
 					optimal = false;
-					
-					for(Route r: dK.getBestRoutes(routesPerIteration)) {
-						boolean newRoute = addedRoutes.add(r);
-						if(!newRoute) {
-							throw new Error("already in route set");
-						} 
-						master.addColumn(r);
-					}
-				} 
+				}
+				for(Route r: routes) {
+					boolean newRoute = addedRoutes.add(r);
+					if(!newRoute) {
+						throw new Error("already in route set");
+					} 
+					master.addColumn(r);
+				}
+			}
+			if(stabilized&&optimal&&stabilizer.isBoxActive()) {
+				//the duals of the master were penalised, solve it again without the box
+				stabilizer.removeBox();
+				master.removeDualBox();
+				optimal = false;
+			} else if(stabilized&&stabilizer.isBoxActive()) {
+				master.setDualBox(stabilizer.getBoxCenter(), stabilizer.getBoxWidth(), stabilizer.getBoxPenalty());
 			}
-			iteration++;
 			runTime = 1e-3*(System.currentTimeMillis()-startTime);
 		}
+		if(nrNodes==0) {
+			iterationsRoot = iteration-1;
+		}
+		if(toSolve.isPrunedByBound()) {
+			nrPrunedByBound++;
+			toSolve.setOptValue(nodeBound);
+			toSolve.setBound(nodeBound);
+			return nodeBound;
+		}
 		if(!optimal) {
 			//timeout
 			masterCost = Double.MAX_VALUE;
 		}
 		toSolve.setOptValue(masterCost);
+		//after an early stop, the master is not converged and only the rounded Lagrangian bound is valid
+		toSolve.setBound(stoppedEarly ? Math.ceil(nodeBound-1e-6) : masterCost);
 		return masterCost;
 	}
 	
 	
 
+	/**
+	 * Method that returns the Lagrangian bound after exact pricing at the duals of the master: the master objective plus
+	 * the number of vehicles times the most negative reduced cost. As every route costs at least two fixed costs, an
+	 * optimal solution of the node has at most masterCost/(2*FIXED_COST) vehicles.
+	 */
+	private double getLagrangianBound(double masterCost) {
+		double minRedCost = 0;
+		for(ShortestPathWithResources dK: pricingProblems.values()) {
+			minRedCost = Math.min(minRedCost, dK.getDistance());
+		}
+		double maxVehicles = Math.floor(masterCost/(2*Instance.FIXED_COST));
+		return masterCost+maxVehicles*minRedCost;
+	}
+
+	/**
+	 * Method that solves the pricing problems for the current costs, and escalates from the heuristics to exact pricing
+	 * until a column is found. Returns the routes per depot.
+	 */
+	private List<List<Route>> priceWithStrategy() {
+		int level = pricingStrategy.getFirstLevel();
+		while(true) {
+			pricingStrategy.apply(level, pricingProblems.values());
+			List<List<Route>> newRoutes = price();
+			boolean found = false;
+			for(List<Route> routes: newRoutes) {
+				found |= !routes.isEmpty();
+			}
+			pricingStrategy.report(level, found);
+			if(found||level==PricingStrategy.EXACT) {
+				return newRoutes;
+			}
+			level = pricingStrategy.getNextLevel(level);
+		}
+	}
+
+	/**
+	 * Method that prices at the separation points of the stabilizer until a column with a negative reduced cost for the
+	 * duals of the master is found, or the separation point reaches the duals. Routes that are already in the master are
+	 * left out. No routes are returned if the Lagrangian bound closes the gap with the master, or if the duals are priced
+	 * out exactly without a column.
+	 */
+	private List<List<Route>> priceStabilized(Map<Trip,Double> duals, double masterCost) throws IloException {
+		while(true) {
+			Map<Trip,Double> separation = stabilizer.getSeparationPoint();
+			updateCosts(separation, true);
+			List<List<Route>> newRoutes = priceWithStrategy();
+			if(pricingProblems.values().iterator().next().isExact()) {
+				//exact pricing gives a Lagrangian bound
+				double minRedCost = 0;
+				Route bestRoute = null;
+				for(ShortestPathWithResources dK: pricingProblems.values()) {
+					if(dK.getDistance()<minRedCost) {
+						minRedCost = dK.getDistance();
+						bestRoute = dK.getBestRoute();
+					}
+				}
+				double bound = stabilizer.updateBound(separation, minRedCost, bestRoute);
+				if(!stabilizer.isBoxActive()&&bound>=masterCost-1e-6) {
+					return new ArrayList<>();
+				}
+			}
+			boolean improving = false;
+			List<List<Route>> filtered = new ArrayList<>();
+			for(List<Route> routes: newRoutes) {
+				List<Route> newForDepot = new ArrayList<>();
+				for(Route r: routes) {
+					if(!addedRoutes.contains(r)) {
+						newForDepot.add(r);
+						improving |= getRedCost(r, duals)<-1e-4;
+					}
+				}
+				filtered.add(newForDepot);
+			}
+			if(improving||stabilizer.isAtOutPoint()) {
+				return filtered;
+			}
+			stabilizer.misprice();
+		}
+	}
+
+	/**
+	 * Method that solves the pricing problems of the depots in parallel. Returns the routes with a negative reduced cost
+	 * per depot, in the order of the depots, such that the columns are added in the same order as without parallelism.
+	 */
+	private List<List<Route>> price() {
+		List<Future<List<Route>>> results = new ArrayList<>();
+		for(Location depot: inst.getDepots()) {
+			ShortestPathWithResources dK = pricingProblems.get(depot);
+			results.add(getPricingWorkers().submit(() -> {
+				dK.computeDistances();
+				double redCost = dK.getDistance();
+				//System.out.println("Found negative reduced cost: "+redCost);
+				if(redCost<-1e-4) {
+					return dK.getBestRoutes(routesPerIteration);
+				}
+				return new ArrayList<>();
+			}));
+		}
+		List<List<Route>> newRoutes = new ArrayList<>();
+		try {
+			for(Future<List<Route>> result: results) {
+				newRoutes.add(result.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Solving the pricing problems failed", e);
+		}
+		return newRoutes;
+	}
+
+	/**
+	 * Method that updates the arc costs of the connection networks of the depots in parallel
+	 */
+	private void updateCosts(Map<Trip,Double> duals, boolean masterFeasible) {
+		pricedDuals = masterFeasible ? duals : null;
+		List<Future<?>> results = new ArrayList<>();
+		for(ConnectionNetwork cN: pricingGraphs.values()) {
+			results.add(getPricingWorkers().submit(() -> cN.updateCosts(duals, masterFeasible)));
+		}
+		try {
+			for(Future<?> result: results) {
+				result.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Updating the pricing networks failed", e);
+		}
+	}
+
+	/**
+	 * Method that returns the workers of the pricing problems. The pool is started when it is first needed and shut down
+	 * at the end of branchAndPrice, the workers are daemon threads such that a node can also be solved on its own.
+	 */
+	private ExecutorService getPricingWorkers() {
+		if(pricingWorkers==null) {
+			pricingWorkers = Executors.newFixedThreadPool(threads, task -> {
+				Thread worker = new Thread(task);
+				worker.setDaemon(true);
+				return worker;
+			});
+		}
+		return pricingWorkers;
+	}
+
+	/**
+	 * Method that prints how many label extensions were pruned by the completion bounds, per depot
+	 */
+	private void printPricingStatistics() {
+		for(Location depot: inst.getDepots()) {
+			ShortestPathWithResources dK = pricingProblems.get(depot);
+			double share = (dK.getNumExtensions()==0) ? 0 : 100.0*dK.getNumPruned()/dK.getNumExtensions();
+			System.out.println("Pricing depot "+depot.getIndex()+": "+dK.getNumPruned()+" of "+dK.getNumExtensions()
+					+" extensions pruned ("+String.format("%.1f", share)+"%), "+dK.getNumSkippedCalls()+" of "
+					+dK.getNumPricingCalls()+" calls skipped");
+		}
+		System.out.println(pricingStrategy);
+		if(stabilizer!=null) {
+			System.out.println(stabilizer);
+		}
+	}
+
+	/**
+	 * Method that switches between forward and bidirectional labeling in the pricing problems
+	 */
+	public void setBidirectionalPricing(boolean bidirectional) {
+		for(ShortestPathWithResources dK: pricingProblems.values()) {
+			dK.setBidirectional(bidirectional);
+		}
+	}
+
+	/**
+	 * Method that sets the number of threads per depot that label a connection network in parallel, for example the cores
+	 * that are left by the depots. The pool is created at the start of branchAndPrice and shut down at its end. With one
+	 * thread, the default, the networks are labeled sequentially.
+	 */
+	public void setLabelingThreads(int labelingThreads) {
+		this.labelingThreads = labelingThreads;
+	}
+
+	/**
+	 * Method that sets the stabilisation of the duals, or null to price at the duals of the master
+	 */
+	public void setStabilizer(DualStabilizer stabilizer) {
+		this.stabilizer = stabilizer;
+	}
+
+	public int getIterationsRoot() {
+		return iterationsRoot;
+	}
+
+	public int getNrPrunedByBound() {
+		return nrPrunedByBound;
+	}
+
+	public int getNrEarlyTerminations() {
+		return nrEarlyTerminations;
+	}
+
+	public void setPricingStrategy(PricingStrategy pricingStrategy) {
+		this.pricingStrategy = pricingStrategy;
+	}
+
+	public PricingStrategy getPricingStrategy() {
+		return pricingStrategy;
+	}
+
 	public static int getRoutesperiteration() {
 		return routesPerIteration;
 	}
@@ -270,6 +571,10 @@ public class BranchAndPrice {
 	public double getTimeMaster() {
 		return timeMaster;
 	}
+
+	public double getTimeMasterSetup() {
+		return timeMasterSetup;
+	}
 	
 	public void addColumn(Duty d) throws IloException {
 		master.addColumn(new Route(d));
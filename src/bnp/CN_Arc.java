@@ -11,6 +11,7 @@ public class CN_Arc  {
 	private final int cost;
 	private final int dist;
 	private final int type; //0 means trip node, -1 means source and 1 means sink
+	private int index; //dense index, the same for corresponding arcs in the networks of all depots
 	public CN_Arc(CN_Node from, CN_Node to, int cost, int dist) {
 		super();
 		this.from = from;
@@ -51,6 +52,14 @@ public class CN_Arc  {
 		return type;
 	}
 
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(cost, dist, from, to, type);
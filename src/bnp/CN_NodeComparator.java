@@ -22,7 +22,7 @@ public class CN_NodeComparator implements Comparator<CN_Node>
 			startTime1 = Integer.MAX_VALUE;
 		}
 		if(o2.isTripNode()) {
-			startTime1 = o2.getTrip().getStartTime();
+			startTime2 = o2.getTrip().getStartTime();
 		} else if(o2.isSource()) {
 			startTime2 = -Integer.MAX_VALUE;
 		} else {
@@ -28,6 +28,8 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 	private Map<Trip,CN_Arc> pullOuts;
 	private Map<Trip,CN_Arc> pullIns;
 	private List<CN_Node> sortedNodes;
+	private int numArcIndices; //arcs are numbered in the order of construction, which is the same for every depot
+	private List<CN_Arc> arcsByIndex;
 	
 	public ConnectionNetwork(Instance inst, Location depot) {
 		
@@ -37,6 +39,7 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 		addNode(sink);
 		pullIns = new LinkedHashMap<>();
 		pullOuts = new LinkedHashMap<>();
+		arcsByIndex = new ArrayList<>();
 		
 		tripToNode = new LinkedHashMap<>();
 		for(Trip t: inst.getTrips()) {
@@ -47,9 +50,11 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 			int dhOut = depot.getTimeTo(t.getStartLocation());
 			int dhIn = depot.getTimeFrom(t.getEndLocation());
 			CN_Arc pullOut = new CN_Arc(source,tNode,Instance.FIXED_COST+dhOut,dhOut);
+			addIndex(pullOut);
 			addArc(source,tNode,pullOut,pullOut.getCost());
 			pullOuts.put(t, pullOut);
 			CN_Arc pullIn = new CN_Arc(tNode,sink,Instance.FIXED_COST+dhIn,dhIn);
+			addIndex(pullIn);
 			addArc(tNode,sink,pullIn,pullIn.getCost());
 			pullIns.put(t, pullIn);
 		}
@@ -70,6 +75,7 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 					CN_Node from = tripToNode.get(t1);
 					CN_Node to = tripToNode.get(t2);
 					CN_Arc conn = new CN_Arc(from,to,dh,dh);
+					addIndex(conn);
 					DirectedGraphArc<CN_Node,CN_Arc> d_conn = addArc(from,to,conn,dh);
 					arcsT1.add(d_conn);
 				}
@@ -77,10 +83,18 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 			outPerTrip.put(t1, arcsT1);
 		}
 		
+		for(int i = 0; i<nodes.size(); i++) {
+			nodes.get(i).setIndex(i);
+		}
 		sortedNodes = new ArrayList<>(nodes);
 		Collections.sort(sortedNodes, new CN_NodeComparator());
 	}
 	
+	private void addIndex(CN_Arc a) {
+		a.setIndex(numArcIndices++);
+		arcsByIndex.add(a);
+	}
+	
 	public List<CN_Node> getSortedNodes() {
 		return sortedNodes;
 	}
@@ -121,4 +135,16 @@ public class ConnectionNetwork extends DirectedGraph<CN_Node, CN_Arc> {
 	public CN_Arc getPullIn(Trip t) {
 		return pullIns.get(t);
 	}
+
+	public int getNumArcIndices() {
+		return numArcIndices;
+	}
+
+	public CN_Arc getArc(int index) {
+		return arcsByIndex.get(index);
+	}
+
+	public CN_Node getNode(int index) {
+		return nodes.get(index);
+	}
 }
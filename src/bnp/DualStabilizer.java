@@ -0,0 +1,184 @@
+package bnp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import problem.Trip;
+
+/**
+ * Class that stabilises the duals of the master problem before they are passed to the pricing problems. The pricing is
+ * done at a separation point between the stability center, the duals with the best Lagrangian bound so far, and the
+ * duals of the master (Wentges smoothing). If the pricing at the separation point finds no column with a negative
+ * reduced cost for the duals of the master, this is a mis-pricing, and the separation point is moved towards the duals
+ * of the master until they coincide. Optionally, the duals are also kept in a box around the center by penalty
+ * variables in the master (du Merle), which is removed before the node is finished.
+ */
+public class DualStabilizer {
+	private final double initialAlpha;
+	private final boolean autoAlpha; //adjust the smoothing factor by the direction of the subgradient
+	private final double boxWidth; //half the width of the box around the center, 0 for no box
+	private final double boxPenalty; //upper bound on the penalty variables of the box
+	private final int maxRoutes; //upper bound on the number of routes in a solution, used for the Lagrangian bound
+
+	private double alpha;
+	private int numMispricings; //consecutive mis-pricings for the current duals of the master
+	private boolean boxActive;
+	private Map<Trip,Double> center;
+	private double centerBound;
+	private Map<Trip,Double> out;
+
+	private int totalMispricings; //statistics since the last reset of the statistics
+	private int numCenterUpdates;
+
+	public DualStabilizer(double alpha, boolean autoAlpha, double boxWidth, double boxPenalty, int maxRoutes) {
+		if(alpha<0||alpha>=1) {
+			throw new Error("The smoothing factor should be in [0,1)");
+		}
+		this.initialAlpha = alpha;
+		this.autoAlpha = autoAlpha;
+		this.boxWidth = boxWidth;
+		this.boxPenalty = boxPenalty;
+		this.maxRoutes = maxRoutes;
+		reset();
+	}
+
+	/**
+	 * Method that forgets the center, used at the start of every node of the branching tree
+	 */
+	public void reset() {
+		alpha = initialAlpha;
+		numMispricings = 0;
+		boxActive = boxWidth>0;
+		center = null;
+		centerBound = -Double.MAX_VALUE;
+		out = null;
+	}
+
+	/**
+	 * Method that sets the duals of the master after it is solved
+	 */
+	public void setOutPoint(Map<Trip,Double> duals) {
+		out = duals;
+		numMispricings = 0;
+	}
+
+	/**
+	 * Method that returns the smoothing factor after the mis-pricings, which goes to 0 in at most 1/(1-alpha) steps
+	 */
+	private double getEffectiveAlpha() {
+		return Math.max(0, 1-(numMispricings+1)*(1-alpha));
+	}
+
+	/**
+	 * Method that returns the duals at which the pricing problems are solved
+	 */
+	public Map<Trip,Double> getSeparationPoint() {
+		double a = getEffectiveAlpha();
+		if(center==null||a==0) {
+			return out;
+		}
+		Map<Trip,Double> separation = new LinkedHashMap<>();
+		for(Trip t: out.keySet()) {
+			separation.put(t, a*center.get(t)+(1-a)*out.get(t));
+		}
+		return separation;
+	}
+
+	/**
+	 * Method that returns whether the separation point is equal to the duals of the master
+	 */
+	public boolean isAtOutPoint() {
+		return center==null||getEffectiveAlpha()==0;
+	}
+
+	/**
+	 * Method that computes the Lagrangian bound of the separation point after exact pricing, updates the center if the
+	 * bound improves, and adjusts the smoothing factor. The best route is the route with the most negative reduced
+	 * cost, or null if there is none. Returns the bound.
+	 */
+	public double updateBound(Map<Trip,Double> separation, double minRedCost, Route bestRoute) {
+		double bound = maxRoutes*Math.min(0, minRedCost);
+		for(double dual: separation.values()) {
+			bound += dual;
+		}
+		if(autoAlpha&&center!=null&&separation!=out) {
+			//the subgradient of the bound at the separation point: one minus the times a trip is covered by the best routes
+			double direction = 0;
+			for(Trip t: separation.keySet()) {
+				double subgradient = 1;
+				if(bestRoute!=null&&minRedCost<0&&bestRoute.getTrips().contains(t)) {
+					subgradient -= maxRoutes;
+				}
+				direction += subgradient*(out.get(t)-separation.get(t));
+			}
+			if(direction>0) {
+				//the bound increases towards the duals of the master, so smooth less
+				alpha = Math.max(0, alpha-0.1);
+			} else {
+				alpha = Math.min(0.99, alpha+0.1*(1-alpha));
+			}
+		}
+		if(bound>centerBound) {
+			centerBound = bound;
+			center = new LinkedHashMap<>(separation);
+			numCenterUpdates++;
+		}
+		return bound;
+	}
+
+	/**
+	 * Method that registers a mis-pricing, such that the next separation point is closer to the duals of the master
+	 */
+	public void misprice() {
+		numMispricings++;
+		totalMispricings++;
+	}
+
+	public boolean isBoxActive() {
+		return boxActive;
+	}
+
+	/**
+	 * Method that removes the box, which is needed before the column generation of a node can be finished
+	 */
+	public void removeBox() {
+		boxActive = false;
+	}
+
+	/**
+	 * Method that returns the center of the box: the stability center, or the duals of the master before there is one
+	 */
+	public Map<Trip,Double> getBoxCenter() {
+		return (center!=null) ? center : out;
+	}
+
+	public double getBoxWidth() {
+		return boxWidth;
+	}
+
+	public double getBoxPenalty() {
+		return boxPenalty;
+	}
+
+	public double getCenterBound() {
+		return centerBound;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public int getTotalMispricings() {
+		return totalMispricings;
+	}
+
+	public int getNumCenterUpdates() {
+		return numCenterUpdates;
+	}
+
+	@Override
+	public String toString() {
+		return "Stabilisation: alpha "+alpha+", "+numCenterUpdates+" center updates, "+totalMispricings+" mis-pricings"
+				+", Lagrangian bound "+centerBound;
+	}
+}
@@ -0,0 +1,74 @@
+package bnp;
+
+import java.util.Arrays;
+
+/**
+ * Class that stores the labels of the pricing problem in primitive arrays. A label is an index into the arrays, and
+ * refers to its predecessor by index, such that no objects are allocated during the labeling. The arena is reset
+ * before every pricing run and only grows when a run needs more labels than any run before.
+ */
+public class LabelArena {
+	private double[] cost;
+	private int[] time;
+	private int[] node; //index of the node of the label
+	private int[] arc; //index of the arc to the node, or from the node for a backward label, -1 for the source and sink
+	private int[] predecessor; //index of the predecessor label, or successor for a backward label, -1 for none
+	private int size;
+
+	public LabelArena(int capacity) {
+		cost = new double[capacity];
+		time = new int[capacity];
+		node = new int[capacity];
+		arc = new int[capacity];
+		predecessor = new int[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Method that stores a new label and returns its index
+	 */
+	public int add(double labelCost, int labelTime, int labelNode, int labelArc, int labelPredecessor) {
+		if(size==cost.length) {
+			int newLength = 2*cost.length;
+			cost = Arrays.copyOf(cost, newLength);
+			time = Arrays.copyOf(time, newLength);
+			node = Arrays.copyOf(node, newLength);
+			arc = Arrays.copyOf(arc, newLength);
+			predecessor = Arrays.copyOf(predecessor, newLength);
+		}
+		cost[size] = labelCost;
+		time[size] = labelTime;
+		node[size] = labelNode;
+		arc[size] = labelArc;
+		predecessor[size] = labelPredecessor;
+		return size++;
+	}
+
+	public void reset() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getCost(int label) {
+		return cost[label];
+	}
+
+	public int getTime(int label) {
+		return time[label];
+	}
+
+	public int getNode(int label) {
+		return node[label];
+	}
+
+	public int getArc(int label) {
+		return arc[label];
+	}
+
+	public int getPredecessor(int label) {
+		return predecessor[label];
+	}
+}
@@ -0,0 +1,128 @@
+package bnp;
+
+import java.util.Arrays;
+
+/**
+ * Class that stores the non-dominated labels of a node in the pricing problem. With the two resources cost and start
+ * time, the labels that are not dominated form a staircase: sorted on increasing start time, the costs are strictly
+ * decreasing. The times and costs are kept in sorted primitive arrays, such that the dominance check is a binary search.
+ * The labels that are dominated by a new label form a consecutive block after its position, and are removed at once.
+ * Labels are referred to by their index in the LabelArena.
+ */
+public class LabelFrontier {
+	private int[] times;
+	private double[] costs;
+	private int[] labels;
+	private int size;
+
+	public LabelFrontier() {
+		times = new int[4];
+		costs = new double[4];
+		labels = new int[4];
+		size = 0;
+	}
+
+	/**
+	 * Method that adds the label if it is not dominated, and removes the labels it dominates. Returns true if the label
+	 * was added.
+	 */
+	public boolean add(double cost, int time, int label) {
+		//the last label that starts no later has the lowest cost of all labels that start no later
+		int pos = countNoLaterThan(time);
+		if(pos>0&&costs[pos-1]<=cost) {
+			return false;
+		}
+		//labels from the first one with the same time on, as long as they are not cheaper, are dominated
+		int first = (pos>0&&times[pos-1]==time) ? pos-1 : pos;
+		int last = first;
+		while(last<size&&costs[last]>=cost) {
+			last++;
+		}
+		int removed = last-first;
+		if(removed==0) {
+			ensureCapacity(size+1);
+			shift(first, first+1);
+			size++;
+		} else if(removed>1) {
+			shift(last, first+1);
+			size -= removed-1;
+		}
+		times[first] = time;
+		costs[first] = cost;
+		labels[first] = label;
+		return true;
+	}
+
+	/**
+	 * Method that returns the number of labels that start no later than the time
+	 */
+	public int countNoLaterThan(int time) {
+		int lo = 0;
+		int hi = size;
+		while(lo<hi) {
+			int mid = (lo+hi)>>>1;
+			if(times[mid]<=time) {
+				lo = mid+1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Method that moves the labels from position from on to position to
+	 */
+	private void shift(int from, int to) {
+		System.arraycopy(times, from, times, to, size-from);
+		System.arraycopy(costs, from, costs, to, size-from);
+		System.arraycopy(labels, from, labels, to, size-from);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity>times.length) {
+			int newLength = Math.max(capacity, 2*times.length);
+			times = Arrays.copyOf(times, newLength);
+			costs = Arrays.copyOf(costs, newLength);
+			labels = Arrays.copyOf(labels, newLength);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	public int get(int i) {
+		return labels[i];
+	}
+
+	/**
+	 * Method that replaces the label at position i, for example when the label is moved to another index
+	 */
+	public void setLabel(int i, int label) {
+		labels[i] = label;
+	}
+
+	public double getCost(int i) {
+		return costs[i];
+	}
+
+	public int getTime(int i) {
+		return times[i];
+	}
+
+	/**
+	 * Method that returns the cheapest label, which is the one with the latest start time
+	 */
+	public int getCheapest() {
+		return get(size-1);
+	}
+
+	public void clear() {
+		size = 0;
+	}
+}
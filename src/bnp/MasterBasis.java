@@ -0,0 +1,31 @@
+package bnp;
+
+import java.util.Map;
+
+import ilog.cplex.IloCplex.BasisStatus;
+
+/**
+ * Class that stores the simplex basis of the master problem at the end of a node, such that its children can warm start
+ * from it. The statuses of the columns are stored per route, as columns are added and removed between the nodes.
+ */
+public class MasterBasis {
+	private final Map<Route,BasisStatus> columnStatuses;
+	private final BasisStatus[] rowStatuses; //in the order of the trips of the instance
+
+	public MasterBasis(Map<Route,BasisStatus> columnStatuses, BasisStatus[] rowStatuses) {
+		this.columnStatuses = columnStatuses;
+		this.rowStatuses = rowStatuses;
+	}
+
+	/**
+	 * Method that returns the status of the column of the route, columns that were added later are at their lower bound
+	 */
+	public BasisStatus getStatus(Route r) {
+		BasisStatus status = columnStatuses.get(r);
+		return (status!=null) ? status : BasisStatus.AtLower;
+	}
+
+	public BasisStatus[] getRowStatuses() {
+		return rowStatuses;
+	}
+}
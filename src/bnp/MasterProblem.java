@@ -14,6 +14,7 @@ import ilog.concert.IloNumVar;
 import ilog.concert.IloObjective;
 import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
+import ilog.cplex.IloCplex.BasisStatus;
 import ilog.cplex.IloCplex.UnknownObjectException;
 import problem.Instance;
 import problem.Location;
@@ -34,8 +35,11 @@ public class MasterProblem {
 	private Map<Trip,IloRange> coveringConstraints;
 	private IloConstraint[] rngArray;
 	
+	private Map<Trip,IloNumVar[]> boxVars; //variables that penalise duals outside a box, used for stabilisation
+	
 	private BNP_Node bnpNode;
 	private Set<Route> routeSetPositive;
+	private boolean warmStarted; //the next solve starts from the basis of the parent node with the dual simplex
 	
 	public MasterProblem(Instance inst) throws IloException {
 		this.inst = inst;
@@ -48,6 +52,7 @@ public class MasterProblem {
 		cplex = new IloCplex();
 		obj = cplex.addMinimize();
 		coveringConstraints = new LinkedHashMap<>();
+		boxVars = null;
 		for(Trip t: inst.getTrips()) {
 			IloRange rng = cplex.addEq(cplex.constant(0),1);
 			coveringConstraints.put(t,rng);
@@ -70,26 +75,86 @@ public class MasterProblem {
 		}
 	}
 	
+	/**
+	 * Method that sets the master problem to the node: the model is kept, and the columns with a forbidden arc are fixed
+	 * to zero by their upper bound. If the node has the basis of its parent, the simplex is warm started from it with the
+	 * dual simplex, as the basis stays dual feasible when bounds are tightened.
+	 */
 	public void setBounds(BNP_Node bNode) throws IloException {
 		this.bnpNode = bNode;
-		this.cleanup();
-		inititalize();
-		varMap = new LinkedHashMap<>();
-		System.out.println("Route set contains "+routeSet.size()+" routes");
+		removeDualBox();
+		int numFixed = 0;
 		for(Route r: routeSet) {
-			//check if it contains a forbidden arc
-			boolean forbidden = false;
-			for(CN_Arc a: r.getArcs()) {
-				if(bNode.getAtLowerBound().get(r.getDepot()).contains(a)) {
-					forbidden = true;
-					break;
-				} 
+			if(isForbidden(r, bNode)) {
+				varMap.get(r).setUB(0);
+				numFixed++;
+			} else {
+				varMap.get(r).setUB(Double.MAX_VALUE);
 			}
-			if(!forbidden) {
-				//add variable to model
-				addColumn(r);
-			} 
 		}
+		System.out.println("Route set contains "+routeSet.size()+" routes, "+numFixed+" fixed to zero");
+		if(bNode.getBasis()!=null) {
+			setBasis(bNode.getBasis());
+			cplex.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Dual);
+			warmStarted = true;
+		}
+	}
+	
+	/**
+	 * Method that checks whether the route contains an arc that is forbidden in the node
+	 */
+	private boolean isForbidden(Route r, BNP_Node bNode) {
+		for(CN_Arc a: r.getArcs()) {
+			if(bNode.getAtLowerBound().get(r.getDepot()).get(a.getIndex())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Method that returns the current basis of the master problem, used to warm start the children of a node
+	 */
+	public MasterBasis getBasis() throws IloException {
+		IloNumVar[] vars = new IloNumVar[varMap.size()];
+		int i = 0;
+		for(IloNumVar var: varMap.values()) {
+			vars[i] = var;
+			i++;
+		}
+		BasisStatus[] statuses = cplex.getBasisStatuses(vars);
+		Map<Route,BasisStatus> columnStatuses = new LinkedHashMap<>();
+		i = 0;
+		for(Route r: varMap.keySet()) {
+			columnStatuses.put(r, statuses[i]);
+			i++;
+		}
+		return new MasterBasis(columnStatuses, cplex.getBasisStatuses(rngArray));
+	}
+	
+	/**
+	 * Method that loads the basis in the master problem, the penalty variables of the box are at their lower bound
+	 */
+	private void setBasis(MasterBasis basis) throws IloException {
+		int numBoxVars = (boxVars==null) ? 0 : 2*boxVars.size();
+		IloNumVar[] vars = new IloNumVar[varMap.size()+numBoxVars];
+		BasisStatus[] statuses = new BasisStatus[vars.length];
+		int i = 0;
+		for(Entry<Route,IloNumVar> ent: varMap.entrySet()) {
+			vars[i] = ent.getValue();
+			statuses[i] = basis.getStatus(ent.getKey());
+			i++;
+		}
+		if(boxVars!=null) {
+			for(IloNumVar[] box: boxVars.values()) {
+				for(IloNumVar var: box) {
+					vars[i] = var;
+					statuses[i] = BasisStatus.AtLower;
+					i++;
+				}
+			}
+		}
+		cplex.setBasisStatuses(vars, statuses, rngArray, basis.getRowStatuses());
 	}
 	
 	public void addColumn(Route r) throws IloException {
@@ -100,14 +165,49 @@ public class MasterProblem {
 		varMap.put(r, cplex.numVar(col, 0, Double.MAX_VALUE));
 		routeSet.add(r);
 		for(CN_Arc a: r.getArcs()) {
-			if(bnpNode!=null&&bnpNode.getAtLowerBound().get(r.getDepot()).contains(a)) {
+			if(bnpNode!=null&&bnpNode.getAtLowerBound().get(r.getDepot()).get(a.getIndex())) {
 				throw new Error("Route is forbidden!");
 			}
 		}
 	}
 	
+	/**
+	 * Method that penalises the duals outside the box [center-width, center+width] of every trip: a surplus and a slack
+	 * variable with the bounds of the box as costs, which are at most the penalty
+	 */
+	public void setDualBox(Map<Trip,Double> center, double width, double penalty) throws IloException {
+		if(boxVars==null) {
+			boxVars = new LinkedHashMap<>();
+			for(Trip t: inst.getTrips()) {
+				IloNumVar surplus = cplex.numVar(cplex.column(obj, 0).and(cplex.column(coveringConstraints.get(t), 1)), 0, 0);
+				IloNumVar slack = cplex.numVar(cplex.column(obj, 0).and(cplex.column(coveringConstraints.get(t), -1)), 0, 0);
+				boxVars.put(t, new IloNumVar[] {surplus, slack});
+			}
+		}
+		for(Trip t: inst.getTrips()) {
+			IloNumVar[] vars = boxVars.get(t);
+			cplex.setLinearCoef(obj, center.get(t)+width, vars[0]);
+			cplex.setLinearCoef(obj, -(center.get(t)-width), vars[1]);
+			vars[0].setUB(penalty);
+			vars[1].setUB(penalty);
+		}
+	}
+	
+	/**
+	 * Method that removes the penalties of the box, such that the objective is the one of the master problem again
+	 */
+	public void removeDualBox() throws IloException {
+		if(boxVars==null) {
+			return;
+		}
+		for(IloNumVar[] vars: boxVars.values()) {
+			vars[0].setUB(0);
+			vars[1].setUB(0);
+		}
+	}
+	
 	public void removeColumn(Route r) throws IloException { 
-		cplex.remove(varMap.get(r));
+		cplex.remove(varMap.remove(r));
 		routeSet.remove(r);
 	}
 	
@@ -152,6 +252,11 @@ public class MasterProblem {
 
 	public void solve() throws IloException {
 		cplex.solve();
+		if(warmStarted) {
+			//after the first solve of a node, columns are added and the primal simplex is faster
+			cplex.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Primal);
+			warmStarted = false;
+		}
 	}
 	public double getObj() throws IloException {
 		return cplex.getObjValue();
@@ -189,6 +294,10 @@ public class MasterProblem {
 			if(!ent.getKey().getDepot().equals(d1)&&!ent.getKey().getDepot().equals(d2)) {
 				continue;
 			}
+			if(isForbidden(ent.getKey(), bnpNode)) {
+				//fixed to zero in this node
+				continue;
+			}
 			double val = cplex.getValue(ent.getValue());
 			if(val<1e-3) {
 				continue;
@@ -254,6 +363,10 @@ public class MasterProblem {
 			if(!ent.getKey().getDepot().equals(d1)&&!ent.getKey().getDepot().equals(d2)) {
 				continue;
 			}
+			if(isForbidden(ent.getKey(), bnpNode)) {
+				//fixed to zero in this node
+				continue;
+			}
 			double val = cplex.getValue(ent.getValue());
 			if(val<1e-3) {
 				continue;
@@ -314,6 +427,9 @@ public class MasterProblem {
 	public void computePositiveRouteSet() throws UnknownObjectException, IloException {
 		routeSetPositive = new LinkedHashSet<>();
 		for(Entry<Route,IloNumVar> ent: varMap.entrySet()) {
+			if(isForbidden(ent.getKey(), bnpNode)) {
+				continue;
+			}
 			double val = cplex.getValue(ent.getValue());
 			Route r = ent.getKey();
 			if(val>1e-3) {
@@ -333,12 +449,13 @@ public class MasterProblem {
 			if(!ent.getKey().getDepot().equals(d)) {
 				continue;
 			}
+			if(isForbidden(ent.getKey(), bnpNode)) {
+				//fixed to zero in this node
+				continue;
+			}
 			double val = cplex.getValue(ent.getValue());
 			Route r = ent.getKey();
 			for(CN_Arc a: r.getArcs()) {
-				if(bnpNode.getAtLowerBound().get(r.getDepot()).contains(a)) {
-					throw new Error("Route is forbidden!");
-				}
 				if(a.getType()==0) {
 					//only check trip arcs
 					if(arcVals.containsKey(a)) {
@@ -0,0 +1,121 @@
+package bnp;
+
+import java.util.Collection;
+
+/**
+ * Class that decides how the pricing problems are solved in a column generation iteration. The pricing starts with a
+ * restricted network that only has the cheapest out-arcs of every trip, then extends only the cheapest labels of every
+ * node, and only prices exactly if the heuristics find no column with a negative reduced cost. A heuristic that fails is
+ * made less restrictive, and once it fails at its weakest restriction it is skipped for the rest of the node.
+ */
+public class PricingStrategy {
+	public final static int RESTRICTED_NETWORK = 0;
+	public final static int LABEL_LIMITED = 1;
+	public final static int EXACT = 2;
+	private final static String[] levelNames = {"restricted network", "label limited", "exact"};
+
+	private final int initialOutArcs;
+	private final int initialLabels;
+	private final int maxOutArcs; //above this, the restricted network is skipped
+	private final int maxLabels;
+
+	private int outArcs;
+	private int labels;
+	private boolean[] skipped;
+
+	private long[] numCalls;
+	private long[] numSuccesses;
+
+	public PricingStrategy(int initialOutArcs, int initialLabels, int maxOutArcs, int maxLabels) {
+		this.initialOutArcs = initialOutArcs;
+		this.initialLabels = initialLabels;
+		this.maxOutArcs = maxOutArcs;
+		this.maxLabels = maxLabels;
+		numCalls = new long[3];
+		numSuccesses = new long[3];
+		reset();
+	}
+
+	public PricingStrategy() {
+		this(5, 1, 40, 4);
+	}
+
+	/**
+	 * Method that restores the initial restrictions, used at the start of every node of the branching tree
+	 */
+	public void reset() {
+		outArcs = initialOutArcs;
+		labels = initialLabels;
+		skipped = new boolean[3];
+	}
+
+	public int getFirstLevel() {
+		return getNextLevel(-1);
+	}
+
+	/**
+	 * Method that returns the first level after the given level that is not skipped
+	 */
+	public int getNextLevel(int level) {
+		int next = level+1;
+		while(next<EXACT&&skipped[next]) {
+			next++;
+		}
+		return next;
+	}
+
+	/**
+	 * Method that sets the restrictions of the level in all pricing problems
+	 */
+	public void apply(int level, Collection<ShortestPathWithResources> pricingProblems) {
+		for(ShortestPathWithResources dK: pricingProblems) {
+			if(level==RESTRICTED_NETWORK) {
+				dK.setHeuristic(outArcs, Integer.MAX_VALUE);
+			} else if(level==LABEL_LIMITED) {
+				dK.setHeuristic(Integer.MAX_VALUE, labels);
+			} else {
+				dK.setHeuristic(Integer.MAX_VALUE, Integer.MAX_VALUE);
+			}
+		}
+	}
+
+	/**
+	 * Method that registers whether the level found a column with a negative reduced cost, and escalates the heuristic
+	 * if it did not
+	 */
+	public void report(int level, boolean found) {
+		numCalls[level]++;
+		if(found) {
+			numSuccesses[level]++;
+			return;
+		}
+		if(level==RESTRICTED_NETWORK) {
+			if(outArcs>=maxOutArcs) {
+				skipped[level] = true;
+			}
+			outArcs = Math.min(2*outArcs, maxOutArcs);
+		} else if(level==LABEL_LIMITED) {
+			if(labels>=maxLabels) {
+				skipped[level] = true;
+			}
+			labels = Math.min(2*labels, maxLabels);
+		}
+	}
+
+	public long getNumCalls(int level) {
+		return numCalls[level];
+	}
+
+	public long getNumSuccesses(int level) {
+		return numSuccesses[level];
+	}
+
+	@Override
+	public String toString() {
+		String s = "Pricing rounds:";
+		for(int level = 0; level<3; level++) {
+			s += " "+levelNames[level]+" "+numSuccesses[level]+"/"+numCalls[level];
+		}
+		return s+" (successful/total)";
+	}
+}
@@ -1,18 +1,15 @@
 package bnp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import ddd.TimedArc;
 import digraph.DirectedGraphArc;
 import problem.Instance;
 import problem.Trip;
@@ -21,43 +18,163 @@ public class ShortestPathWithResources {
 	private ConnectionNetwork dag;
 	private final int maxDeviation;
 	
-	private Map<CN_Node,List<Label>> labelsPerNode;
+	private LabelArena arena; //all labels of the current run, reused in every run
+	private LabelFrontier[] labelsPerNode; //the non-dominated labels of every node, by node index
+	private List<List<DirectedGraphArc<CN_Node, CN_Arc>>> outArcs; //by node index, to avoid the lookups in the graph
+	private List<List<DirectedGraphArc<CN_Node, CN_Arc>>> inArcs;
 	
-	private Label winner; 
-	private List<Label> bestLabels;
+	private int winner; 
+	private int[] sinkLabels; //labels at the sink with a negative reduced cost
+	private int numSinkLabels;
 	
-	private List<CN_Arc> forbiddenArcs;
+	private BitSet forbiddenArcs; //indices of the arcs that are fixed to zero by branching
+	
+	private boolean useCompletionBound = true;
+	private double[] completionBound; //lower bound on the reduced cost from a node to the sink, by node index
+	private long numExtensions; //statistics since the last reset
+	private long numPruned;
+	private long numPricingCalls;
+	private long numSkippedCalls;
+	
+	//bidirectional labeling: forward labels up to the half-way point, backward labels with the latest start time after it
+	private boolean bidirectional = false;
+	private boolean[] forwardHalf; //whether the node is before the half-way point, by node index
+	private double[] originBound; //lower bound on the reduced cost from the source to a node, by node index
+	private int[] joinForward; //routes joined from a forward label, a crossing arc and a backward label
+	private int[] joinArc;
+	private int[] joinBackward;
+	private double[] joinCost;
+	private int numJoins;
+	private int bestJoin;
+	
+	//parallel labeling: the nodes are partitioned into waves, such that all predecessors of a node are in earlier waves
+	private ForkJoinPool labelingPool;
+	private List<int[]> waves; //node indices per wave, in topological order
+	private List<List<DirectedGraphArc<CN_Node, CN_Arc>>> sortedInArcs; //by node index, in topological order of the tails
+	private int[] numCandidates; //the labels pulled into a node in the current wave, by node index
+	private double[][] candidateCost;
+	private int[][] candidateTime;
+	private int[][] candidatePredecessor;
+	private int[][] candidateArc;
+	private int[] sinkMapping; //candidate at the sink -> label in the arena
+	
+	//heuristic pricing: only the cheapest out-arcs of a node and the cheapest labels of a node are extended
+	private int maxOutArcs = Integer.MAX_VALUE;
+	private int maxLabelsPerNode = Integer.MAX_VALUE;
+	private List<List<DirectedGraphArc<CN_Node, CN_Arc>>> restrictedOutArcs; //by node index, rebuilt in every heuristic run
+	
+	private final static int minChunkSize = 16; //nr of nodes in a task of a wave
+	private final static double eps = 1e-4;
+	private final static int noLatestStart = Integer.MAX_VALUE/2;
+	private static int printDetail = 1;
 	
 	public ShortestPathWithResources(ConnectionNetwork dag, int maxDeviation) {
 		this.dag = dag;
 		this.maxDeviation = maxDeviation;
-		labelsPerNode = new LinkedHashMap<>();
-		forbiddenArcs = new ArrayList<>();
+		forbiddenArcs = new BitSet();
+		arena = new LabelArena(1024);
+		labelsPerNode = new LabelFrontier[dag.getNodes().size()];
+		outArcs = new ArrayList<>();
+		inArcs = new ArrayList<>();
+		for(int i = 0; i<labelsPerNode.length; i++) {
+			labelsPerNode[i] = new LabelFrontier();
+			outArcs.add(dag.getOutArcs(dag.getNode(i)));
+			inArcs.add(dag.getInArcs(dag.getNode(i)));
+		}
+		sinkLabels = new int[64];
+		completionBound = new double[labelsPerNode.length];
+		originBound = new double[labelsPerNode.length];
+		winner = -1;
+		
+		//the half-way point is halfway between the first and the last trip
+		int first = Integer.MAX_VALUE;
+		int last = Integer.MIN_VALUE;
+		for(CN_Node node: dag.getNodes()) {
+			if(node.isTripNode()) {
+				first = Math.min(first, node.getTrip().getStartTime());
+				last = Math.max(last, node.getTrip().getStartTime());
+			}
+		}
+		int halfWay = first+(last-first)/2;
+		forwardHalf = new boolean[labelsPerNode.length];
+		for(CN_Node node: dag.getNodes()) {
+			forwardHalf[node.getNodeIndex()] = node.isSource()||(node.isTripNode()&&node.getTrip().getStartTime()<halfWay);
+		}
+		joinForward = new int[64];
+		joinArc = new int[64];
+		joinBackward = new int[64];
+		joinCost = new double[64];
+		bestJoin = -1;
+		
+		initWaves();
+		restrictedOutArcs = new ArrayList<>();
+		for(int i = 0; i<labelsPerNode.length; i++) {
+			restrictedOutArcs.add(new ArrayList<>());
+		}
+	}
+	
+	/**
+	 * Method that partitions the nodes into waves by their longest distance in arcs from the source. There are no arcs
+	 * between the nodes of a wave, so the labels of all nodes in a wave can be computed at the same time.
+	 */
+	private void initWaves() {
+		List<CN_Node> sortedNodes = dag.getSortedNodes();
+		int[] position = new int[labelsPerNode.length];
+		int[] wave = new int[labelsPerNode.length];
+		List<List<Integer>> nodesPerWave = new ArrayList<>();
+		for(int i = 0; i<sortedNodes.size(); i++) {
+			int node = sortedNodes.get(i).getNodeIndex();
+			position[node] = i;
+			for(DirectedGraphArc<CN_Node, CN_Arc> inArc: inArcs.get(node)) {
+				wave[node] = Math.max(wave[node], wave[inArc.getFrom().getNodeIndex()]+1);
+			}
+			if(wave[node]==nodesPerWave.size()) {
+				nodesPerWave.add(new ArrayList<>());
+			}
+			nodesPerWave.get(wave[node]).add(node);
+		}
+		waves = new ArrayList<>();
+		for(List<Integer> nodes: nodesPerWave) {
+			int[] nodeArray = new int[nodes.size()];
+			for(int i = 0; i<nodes.size(); i++) {
+				nodeArray[i] = nodes.get(i);
+			}
+			waves.add(nodeArray);
+		}
+		
+		//pulling the labels from the tails in topological order gives the same labels as scanning the nodes in order
+		sortedInArcs = new ArrayList<>();
+		for(int node = 0; node<labelsPerNode.length; node++) {
+			List<DirectedGraphArc<CN_Node, CN_Arc>> sorted = new ArrayList<>(inArcs.get(node));
+			sorted.sort((a1,a2) -> Integer.compare(position[a1.getFrom().getNodeIndex()], position[a2.getFrom().getNodeIndex()]));
+			sortedInArcs.add(sorted);
+		}
+		numCandidates = new int[labelsPerNode.length];
+		candidateCost = new double[labelsPerNode.length][];
+		candidateTime = new int[labelsPerNode.length][];
+		candidatePredecessor = new int[labelsPerNode.length][];
+		candidateArc = new int[labelsPerNode.length][];
+		sinkMapping = new int[0];
 	}
 
 	public double getDistance() {
-		if(winner==null) {
-			System.out.println("No path, returning 0");
+		if(bidirectional) {
+			return (bestJoin<0) ? 0 : joinCost[bestJoin];
+		}
+		if(winner<0) {
+			if(printDetail>1) {
+				System.out.println("No path, returning 0");
+			}
 			return 0;
 		}
-		return winner.getCost();
+		return arena.getCost(winner);
 	}
 	
 	public Route getBestRoute() {
-		List<Trip> tripList = new ArrayList<>();
-		List<CN_Arc> arcList = new ArrayList<>();
-		Label curLabel = bestLabels.get(0);
-		double redCost = curLabel.getCost();
-		while(curLabel!=null) {
-			if(curLabel.getNode().isTripNode()) {
-				tripList.add(curLabel.getNode().getTrip());
-				arcList.add(curLabel.getLastArc());
-			}
-			curLabel = curLabel.getPredecessor();
+		if(bidirectional) {
+			return getJoinedRoute(bestJoin);
 		}
-		Collections.reverse(tripList);
-		Collections.reverse(arcList);
-		return new Route(dag.getSource().getDepotLoc(),tripList,arcList);
+		return getRoute(winner);
 	}
 	
 	public double getReducedCost(CN_Arc a) {
@@ -69,98 +186,472 @@ public class ShortestPathWithResources {
 	}
 	
 	public double getDistance(CN_Node n) {
-		List<Label> labels = labelsPerNode.get(n);
-		Collections.sort(labels);
-		return labels.get(0).getCost();
+		return arena.getCost(labelsPerNode[n.getNodeIndex()].getCheapest());
 	}
 	
 	public List<Route> getBestRoutes(int k) {
-		List<Route> bestRoutes = new ArrayList<>();
-		Collections.sort(bestLabels);//, Comparator.comparingDouble(item -> item.getCost())); 
-		
-		for(int i = 1; i<=k; i++) {
-			List<Trip> tripList = new ArrayList<>();
-			List<CN_Arc> arcList = new ArrayList<>();
-			Label curLabel = bestLabels.get(i-1);
-			double redCost = curLabel.getCost();
-			if(redCost<-1e-4) {
-				//System.out.println(i+"th label with red cost: "+redCost);
-				while(curLabel!=null) {
-					if(curLabel.getNode().isTripNode()) {
-						tripList.add(curLabel.getNode().getTrip());
-						arcList.add(curLabel.getLastArc());
-					}
-					curLabel = curLabel.getPredecessor();
-				}
-				Collections.reverse(tripList);
-				Collections.reverse(arcList);
-				bestRoutes.add(new Route(dag.getSource().getDepotLoc(),tripList,arcList));
-			} else {
-				break;
+		if(bidirectional) {
+			Integer[] sorted = new Integer[numJoins];
+			for(int i = 0; i<numJoins; i++) {
+				sorted[i] = i;
+			}
+			Arrays.sort(sorted, (j1,j2) -> Double.compare(joinCost[j1], joinCost[j2]));
+			List<Route> bestRoutes = new ArrayList<>();
+			for(int i = 0; i<Math.min(k, sorted.length); i++) {
+				bestRoutes.add(getJoinedRoute(sorted[i]));
 			}
-			
+			return bestRoutes;
+		}
+		Integer[] sorted = new Integer[numSinkLabels];
+		for(int i = 0; i<numSinkLabels; i++) {
+			sorted[i] = sinkLabels[i];
+		}
+		Arrays.sort(sorted, (l1,l2) -> Double.compare(arena.getCost(l1), arena.getCost(l2)));
+		List<Route> bestRoutes = new ArrayList<>();
+		for(int i = 0; i<Math.min(k, sorted.length); i++) {
+			bestRoutes.add(getRoute(sorted[i]));
 		}
-		
-		
 		return bestRoutes;
 	}
 	
+	/**
+	 * Method that reconstructs the route of a label by following the predecessor indices
+	 */
+	private Route getRoute(int label) {
+		List<Trip> tripList = new ArrayList<>();
+		List<CN_Arc> arcList = new ArrayList<>();
+		int curLabel = label;
+		while(curLabel>=0) {
+			CN_Node node = dag.getNode(arena.getNode(curLabel));
+			if(node.isTripNode()) {
+				tripList.add(node.getTrip());
+				arcList.add(dag.getArc(arena.getArc(curLabel)));
+			}
+			curLabel = arena.getPredecessor(curLabel);
+		}
+		Collections.reverse(tripList);
+		Collections.reverse(arcList);
+		return new Route(dag.getSource().getDepotLoc(),tripList,arcList);
+	}
+	
+	/**
+	 * Method that reconstructs a joined route: the forward part by its predecessors, followed by the crossing arc and the
+	 * backward part by its successors. As for the forward labels, the route contains the arcs to its trips.
+	 */
+	private Route getJoinedRoute(int join) {
+		Route forwardPart = getRoute(joinForward[join]);
+		List<Trip> tripList = new ArrayList<>(forwardPart.getTrips());
+		List<CN_Arc> arcList = new ArrayList<>(forwardPart.getArcs());
+		int curLabel = joinBackward[join];
+		CN_Arc toCurrent = dag.getArc(joinArc[join]);
+		while(dag.getNode(arena.getNode(curLabel)).isTripNode()) {
+			tripList.add(dag.getNode(arena.getNode(curLabel)).getTrip());
+			arcList.add(toCurrent);
+			toCurrent = dag.getArc(arena.getArc(curLabel));
+			curLabel = arena.getPredecessor(curLabel);
+		}
+		return new Route(dag.getSource().getDepotLoc(),tripList,arcList);
+	}
+	
 	public void computeDistances() {
-		//initialise the labels
-		for(CN_Node node: dag.getNodes()) {
-			labelsPerNode.put(node,new ArrayList<>());
+		//reset the labels
+		arena.reset();
+		for(LabelFrontier frontier: labelsPerNode) {
+			frontier.clear();
+		}
+		numSinkLabels = 0;
+		numJoins = 0;
+		bestJoin = -1;
+		winner = -1;
+		numPricingCalls++;
+		int source = dag.getSource().getNodeIndex();
+		if(useCompletionBound) {
+			computeCompletionBounds();
+			if(completionBound[source]>=-eps) {
+				//no route can have a negative reduced cost
+				numSkippedCalls++;
+				return;
+			}
 		}
 		//add the label for the origin
-		labelsPerNode.get(dag.getSource()).add(new Label(dag.getSource(),0,0,null,null));
-		bestLabels = new ArrayList<>();
+		labelsPerNode[source].add(0, 0, arena.add(0, 0, source, -1, -1));
+		if(!isExact()) {
+			//the heuristics use the sequential forward labeling
+			if(maxOutArcs<Integer.MAX_VALUE) {
+				computeRestrictedOutArcs();
+			}
+			for(CN_Node node: dag.getSortedNodes()) {
+				scan(node, false);
+			}
+			LabelFrontier sinkFrontier = labelsPerNode[dag.getSink().getNodeIndex()];
+			winner = sinkFrontier.isEmpty() ? -1 : sinkFrontier.getCheapest();
+			return;
+		}
+		if(bidirectional) {
+			computeBidirectional();
+			return;
+		}
 
-		//System.out.println("Start scanning");
-		for(CN_Node node: dag.getSortedNodes()) {
-			//System.out.println("Scanning: "+node);
-			scan(node);
+		if(labelingPool!=null) {
+			computeInWaves();
+		} else {
+			for(CN_Node node: dag.getSortedNodes()) {
+				scan(node, false);
+			}
 		}
-		//System.out.println("Stop scanning");
 		
 		//determine winner
-		double shortest = Double.MAX_VALUE;
-		winner = null;
-		for(Label label: labelsPerNode.get(dag.getSink())) {
-			if(label.getCost()<shortest) {
-				shortest = label.getCost();
-				winner = label;
+		LabelFrontier sinkFrontier = labelsPerNode[dag.getSink().getNodeIndex()];
+		winner = sinkFrontier.isEmpty() ? -1 : sinkFrontier.getCheapest();
+	}
+	
+	/**
+	 * Method that computes the labels wave by wave. Within a wave, every node pulls the labels of its predecessors in
+	 * parallel, and only writes to its own frontier and candidates. After the wave, the labels that are not dominated are
+	 * stored in the arena in the order of the nodes, such that the result does not depend on the scheduling.
+	 */
+	private void computeInWaves() {
+		for(int w = 1; w<waves.size(); w++) {
+			int[] wave = waves.get(w);
+			int chunkSize = Math.max(minChunkSize, wave.length/(2*labelingPool.getParallelism())+1);
+			if(wave.length<=chunkSize) {
+				long[] counts = pull(wave, 0, wave.length);
+				numExtensions += counts[0];
+				numPruned += counts[1];
+			} else {
+				List<Callable<long[]>> tasks = new ArrayList<>();
+				for(int first = 0; first<wave.length; first += chunkSize) {
+					final int from = first;
+					final int to = Math.min(wave.length, first+chunkSize);
+					tasks.add(() -> pull(wave, from, to));
+				}
+				try {
+					for(Future<long[]> result: labelingPool.invokeAll(tasks)) {
+						long[] counts = result.get();
+						numExtensions += counts[0];
+						numPruned += counts[1];
+					}
+				} catch (InterruptedException | ExecutionException e) {
+					throw new Error("Labeling a wave failed", e);
+				}
+			}
+			for(int node: wave) {
+				storeCandidates(node);
 			}
 		}
 	}
 	
+	/**
+	 * Method that pulls the labels over the in-arcs of the nodes from position from up to position to in the wave.
+	 * Returns the number of extensions and pruned extensions, which are added to the statistics by the caller.
+	 */
+	private long[] pull(int[] wave, int from, int to) {
+		long[] counts = new long[2];
+		for(int w = from; w<to; w++) {
+			int node = wave[w];
+			CN_Node head = dag.getNode(node);
+			LabelFrontier frontier = labelsPerNode[node];
+			numCandidates[node] = 0;
+			for(DirectedGraphArc<CN_Node, CN_Arc> inArc: sortedInArcs.get(node)) {
+				int arcIndex = inArc.getData().getIndex();
+				if(forbiddenArcs.get(arcIndex)) {
+					continue;
+				}
+				CN_Node tail = inArc.getFrom();
+				LabelFrontier labels = labelsPerNode[tail.getNodeIndex()];
+				for(int i = 0; i<labels.size(); i++) {
+					int arrTime = labels.getTime(i)+inArc.getData().getDist();
+					if(tail.isTripNode()) {
+						arrTime += tail.getTrip().getTripTime();
+					}
+					int newTime = arrTime;
+					if(head.isTripNode()) {
+						Trip t = head.getTrip();
+						if(arrTime>t.getStartTime()+maxDeviation) {
+							continue;
+						}
+						newTime = Math.max(arrTime, t.getStartTime()-maxDeviation);
+					}
+					double newCost = labels.getCost(i)+inArc.getCost();
+					counts[0]++;
+					if(useCompletionBound&&newCost+completionBound[node]>=-eps) {
+						counts[1]++;
+						continue;
+					}
+					int candidate = addCandidate(node, newCost, newTime, labels.get(i), arcIndex);
+					frontier.add(newCost, newTime, candidate);
+				}
+			}
+		}
+		return counts;
+	}
 	
+	private int addCandidate(int node, double cost, int time, int predecessor, int arc) {
+		int candidate = numCandidates[node]++;
+		if(candidateCost[node]==null||candidate==candidateCost[node].length) {
+			int length = (candidateCost[node]==null) ? 8 : 2*candidate;
+			candidateCost[node] = (candidateCost[node]==null) ? new double[length] : Arrays.copyOf(candidateCost[node], length);
+			candidateTime[node] = (candidateTime[node]==null) ? new int[length] : Arrays.copyOf(candidateTime[node], length);
+			candidatePredecessor[node] = (candidatePredecessor[node]==null) ? new int[length]
+					: Arrays.copyOf(candidatePredecessor[node], length);
+			candidateArc[node] = (candidateArc[node]==null) ? new int[length] : Arrays.copyOf(candidateArc[node], length);
+		}
+		candidateCost[node][candidate] = cost;
+		candidateTime[node][candidate] = time;
+		candidatePredecessor[node][candidate] = predecessor;
+		candidateArc[node][candidate] = arc;
+		return candidate;
+	}
 	
+	/**
+	 * Method that stores the candidates of the node that are in its frontier in the arena, and replaces them by their
+	 * labels. At the sink, all candidates with a negative reduced cost are stored in the order in which they arrived, as
+	 * in the sequential labeling.
+	 */
+	private void storeCandidates(int node) {
+		LabelFrontier frontier = labelsPerNode[node];
+		if(node!=dag.getSink().getNodeIndex()) {
+			for(int i = 0; i<frontier.size(); i++) {
+				int c = frontier.get(i);
+				frontier.setLabel(i, arena.add(candidateCost[node][c], candidateTime[node][c], node,
+						candidateArc[node][c], candidatePredecessor[node][c]));
+			}
+			return;
+		}
+		if(sinkMapping.length<numCandidates[node]) {
+			sinkMapping = new int[numCandidates[node]];
+		}
+		Arrays.fill(sinkMapping, 0, numCandidates[node], -1);
+		for(int i = 0; i<frontier.size(); i++) {
+			sinkMapping[frontier.get(i)] = -2;
+		}
+		for(int c = 0; c<numCandidates[node]; c++) {
+			boolean negativeRoute = candidateCost[node][c]<-eps;
+			if(negativeRoute||sinkMapping[c]==-2) {
+				sinkMapping[c] = arena.add(candidateCost[node][c], candidateTime[node][c], node, candidateArc[node][c],
+						candidatePredecessor[node][c]);
+			}
+			if(negativeRoute) {
+				addSinkLabel(sinkMapping[c]);
+			}
+		}
+		for(int i = 0; i<frontier.size(); i++) {
+			frontier.setLabel(i, sinkMapping[frontier.get(i)]);
+		}
+	}
 	
-	private void scan(CN_Node node) {
-		//System.out.println("Checking node: "+node +" nr labels :"+labelsPerNode.get(node).size());
-		for(Label label: labelsPerNode.get(node)) {
-//			if(node.isTripNode()&&node.getTrip().getID()==98) {
-//				System.out.println("Checking label: "+label);
-//			}
-			//System.out.println("Checking label: "+label);
-			double oldCost = label.getCost();
-			int oldTime = label.getStartTime();
+	/**
+	 * Method that computes for every node the cost of the cheapest path to the sink without the time windows, in reverse
+	 * topological order. This is a lower bound on the reduced cost that a label at the node can still add.
+	 */
+	private void computeCompletionBounds() {
+		List<CN_Node> sortedNodes = dag.getSortedNodes();
+		for(int i = sortedNodes.size()-1; i>=0; i--) {
+			CN_Node node = sortedNodes.get(i);
+			double bound = (node==dag.getSink()) ? 0 : Double.POSITIVE_INFINITY;
+			for(DirectedGraphArc<CN_Node, CN_Arc> outArc: outArcs.get(node.getNodeIndex())) {
+				if(!forbiddenArcs.get(outArc.getData().getIndex())) {
+					bound = Math.min(bound, outArc.getCost()+completionBound[outArc.getTo().getNodeIndex()]);
+				}
+			}
+			completionBound[node.getNodeIndex()] = bound;
+		}
+	}
+	
+	/**
+	 * Method that labels forward from the source up to the half-way point and backward from the sink down to it, and then
+	 * joins the labels over the arcs that cross the half-way point. A backward label at a trip has the reduced cost of the
+	 * rest of the route and the latest start time of the trip for which the rest is feasible. A forward label can be joined
+	 * with the backward labels at the head of the arc that start no earlier than its arrival.
+	 */
+	private void computeBidirectional() {
+		List<CN_Node> sortedNodes = dag.getSortedNodes();
+		if(useCompletionBound) {
+			computeOriginBounds();
+		}
+		int sink = dag.getSink().getNodeIndex();
+		labelsPerNode[sink].add(0, -noLatestStart, arena.add(0, noLatestStart, sink, -1, -1));
+		for(CN_Node node: sortedNodes) {
+			if(forwardHalf[node.getNodeIndex()]) {
+				scan(node, true);
+			}
+		}
+		for(int i = sortedNodes.size()-1; i>=0; i--) {
+			if(!forwardHalf[sortedNodes.get(i).getNodeIndex()]) {
+				scanBackward(sortedNodes.get(i));
+			}
+		}
+		for(CN_Node node: sortedNodes) {
+			if(forwardHalf[node.getNodeIndex()]) {
+				join(node);
+			}
+		}
+	}
+	
+	/**
+	 * Method that computes for every node the cost of the cheapest path from the source without the time windows, in
+	 * topological order. This is a lower bound on the reduced cost before a backward label at the node.
+	 */
+	private void computeOriginBounds() {
+		for(CN_Node node: dag.getSortedNodes()) {
+			double bound = node.isSource() ? 0 : Double.POSITIVE_INFINITY;
+			for(DirectedGraphArc<CN_Node, CN_Arc> inArc: inArcs.get(node.getNodeIndex())) {
+				if(!forbiddenArcs.get(inArc.getData().getIndex())) {
+					bound = Math.min(bound, originBound[inArc.getFrom().getNodeIndex()]+inArc.getCost());
+				}
+			}
+			originBound[node.getNodeIndex()] = bound;
+		}
+	}
+	
+	/**
+	 * Method that extends the backward labels of the node to its predecessors after the half-way point. The frontier of a
+	 * backward label stores the negated latest start time, such that a later start time dominates.
+	 */
+	private void scanBackward(CN_Node node) {
+		LabelFrontier labels = labelsPerNode[node.getNodeIndex()];
+		for(int i = 0; i<labels.size(); i++) {
+			int label = labels.get(i);
+			double oldCost = arena.getCost(label);
+			int latestStart = arena.getTime(label);
+			for(DirectedGraphArc<CN_Node, CN_Arc> inArc: inArcs.get(node.getNodeIndex())) {
+				CN_Node from = inArc.getFrom();
+				int arcIndex = inArc.getData().getIndex();
+				if(forwardHalf[from.getNodeIndex()]||forbiddenArcs.get(arcIndex)) {
+					continue;
+				}
+				Trip t = from.getTrip();
+				int newLatestStart = Math.min(t.getStartTime()+maxDeviation,
+						latestStart-inArc.getData().getDist()-t.getTripTime());
+				if(newLatestStart<t.getStartTime()-maxDeviation) {
+					//the rest of the route cannot be reached in time
+					continue;
+				}
+				double newCost = oldCost+inArc.getCost();
+				numExtensions++;
+				if(useCompletionBound&&originBound[from.getNodeIndex()]+newCost>=-eps) {
+					numPruned++;
+					continue;
+				}
+				int next = arena.size();
+				if(labelsPerNode[from.getNodeIndex()].add(newCost, -newLatestStart, next)) {
+					arena.add(newCost, newLatestStart, from.getNodeIndex(), arcIndex, label);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Method that joins every forward label of the node with its cheapest completion over the arcs that cross the half-way
+	 * point. At the head of an arc, the backward labels that start no earlier than the arrival are a prefix of the
+	 * frontier, with the cheapest last. Every forward label gives at most one route.
+	 */
+	private void join(CN_Node node) {
+		LabelFrontier labels = labelsPerNode[node.getNodeIndex()];
+		for(int i = 0; i<labels.size(); i++) {
+			int label = labels.get(i);
+			double oldCost = arena.getCost(label);
+			int oldTime = arena.getTime(label);
+			if(node.isTripNode()) {
+				oldTime += node.getTrip().getTripTime();
+			}
+			double bestCost = -eps;
+			int bestArc = -1;
+			int bestBackward = -1;
+			for(DirectedGraphArc<CN_Node, CN_Arc> outArc: outArcs.get(node.getNodeIndex())) {
+				int to = outArc.getTo().getNodeIndex();
+				int arcIndex = outArc.getData().getIndex();
+				if(forwardHalf[to]||forbiddenArcs.get(arcIndex)) {
+					continue;
+				}
+				int arrTime = oldTime+outArc.getData().getDist();
+				LabelFrontier backward = labelsPerNode[to];
+				int cheapest = backward.countNoLaterThan(-arrTime)-1;
+				if(cheapest>=0&&oldCost+outArc.getCost()+backward.getCost(cheapest)<bestCost) {
+					bestCost = oldCost+outArc.getCost()+backward.getCost(cheapest);
+					bestArc = arcIndex;
+					bestBackward = backward.get(cheapest);
+				}
+			}
+			if(bestArc>=0) {
+				addJoin(label, bestArc, bestBackward, bestCost);
+			}
+		}
+	}
+	
+	private void addJoin(int forward, int arc, int backward, double cost) {
+		if(numJoins==joinCost.length) {
+			joinForward = Arrays.copyOf(joinForward, 2*numJoins);
+			joinArc = Arrays.copyOf(joinArc, 2*numJoins);
+			joinBackward = Arrays.copyOf(joinBackward, 2*numJoins);
+			joinCost = Arrays.copyOf(joinCost, 2*numJoins);
+		}
+		joinForward[numJoins] = forward;
+		joinArc[numJoins] = arc;
+		joinBackward[numJoins] = backward;
+		joinCost[numJoins] = cost;
+		if(bestJoin<0||cost<joinCost[bestJoin]) {
+			bestJoin = numJoins;
+		}
+		numJoins++;
+	}
+	
+	/**
+	 * Method that keeps for every node only the cheapest out-arcs by reduced cost, and the arc to the sink such that every
+	 * label can still be completed to a route
+	 */
+	private void computeRestrictedOutArcs() {
+		for(int node = 0; node<labelsPerNode.length; node++) {
+			//insert the arcs in the list of the cheapest arcs, which is sorted on reduced cost
+			List<DirectedGraphArc<CN_Node, CN_Arc>> restricted = restrictedOutArcs.get(node);
+			restricted.clear();
+			DirectedGraphArc<CN_Node, CN_Arc> toSink = null;
+			for(DirectedGraphArc<CN_Node, CN_Arc> outArc: outArcs.get(node)) {
+				if(forbiddenArcs.get(outArc.getData().getIndex())) {
+					continue;
+				}
+				if(outArc.getTo()==dag.getSink()) {
+					toSink = outArc;
+				}
+				if(restricted.size()==maxOutArcs&&outArc.getCost()>=restricted.get(maxOutArcs-1).getCost()) {
+					continue;
+				}
+				int pos = restricted.size();
+				while(pos>0&&restricted.get(pos-1).getCost()>outArc.getCost()) {
+					pos--;
+				}
+				restricted.add(pos, outArc);
+				if(restricted.size()>maxOutArcs) {
+					restricted.remove(maxOutArcs);
+				}
+			}
+			if(toSink!=null&&!restricted.contains(toSink)) {
+				restricted.add(toSink);
+			}
+		}
+	}
+	
+	private void scan(CN_Node node, boolean forwardHalfOnly) {
+		LabelFrontier labels = labelsPerNode[node.getNodeIndex()];
+		List<DirectedGraphArc<CN_Node, CN_Arc>> arcs = (maxOutArcs<Integer.MAX_VALUE)
+				? restrictedOutArcs.get(node.getNodeIndex()) : outArcs.get(node.getNodeIndex());
+		//the cheapest labels are at the end of the frontier
+		for(int i = Math.max(0, labels.size()-maxLabelsPerNode); i<labels.size(); i++) {
+			int label = labels.get(i);
+			double oldCost = arena.getCost(label);
+			int oldTime = arena.getTime(label);
 			if(node.isTripNode()) {
 				oldTime += node.getTrip().getTripTime();
 			}
-			for(DirectedGraphArc<CN_Node, CN_Arc> outArc: dag.getOutArcs(node)) {
-				if(forbiddenArcs.contains(outArc.getData())) {
+			for(DirectedGraphArc<CN_Node, CN_Arc> outArc: arcs) {
+				int arcIndex = outArc.getData().getIndex();
+				if(forbiddenArcs.get(arcIndex)||(forwardHalfOnly&&!forwardHalf[outArc.getTo().getNodeIndex()])) {
 					continue;
 				}
 				double cost = outArc.getCost();
 				int dist = outArc.getData().getDist();
 				double newCost = oldCost+cost;
 				int arrTime = oldTime+dist; //arrival time at the start of the trip
-//				if(node.isTripNode()&&node.getTrip().getID()==98&&outArc.getTo().isTripNode()&&outArc.getTo().getTrip().getID()==88) {
-//					System.out.println("Checking label: "+label);
-//				}
-//				if(node.isSource()&&outArc.getTo().isTripNode()&&outArc.getTo().getTrip().getID()==98) {
-//					System.out.println("Checking label: "+label);
-//				}
 				int newTime = arrTime;
 				boolean feasibleExtension = true;
 				
@@ -173,19 +664,18 @@ public class ShortestPathWithResources {
 						//we're still in time
 						newTime = arrTime;
 					} else {
-//						if(node.isSource()&&outArc.getTo().isTripNode()&&outArc.getTo().getTrip().getID()==98) {
-//							System.out.println("Arrtime: "+arrTime);
-//						}
 						feasibleExtension = false;//else we're too late, don't make new label
 					}
 				}
-//				if(node.isSource()&&outArc.getTo().isTripNode()&&outArc.getTo().getTrip().getID()==98) {
-//					System.out.println("Feasible extension: "+feasibleExtension);
-//				}
 				
 				if(feasibleExtension) {
-					Label newLabel = new Label(outArc.getTo(),newCost,newTime,label,outArc.getData());
-					addLabel(newLabel);
+					numExtensions++;
+					if(useCompletionBound&&newCost+completionBound[outArc.getTo().getNodeIndex()]>=-eps) {
+						//the label cannot be completed to a route with a negative reduced cost
+						numPruned++;
+						continue;
+					}
+					addLabel(newCost, newTime, outArc.getTo().getNodeIndex(), arcIndex, label);
 				}
 			}
 		}
@@ -193,117 +683,84 @@ public class ShortestPathWithResources {
 	}
 	
 	/**
-	 * Method that adds the label after a dominance check
+	 * Method that adds the label after a dominance check, in O(log n) on the frontier of the node. The label is only
+	 * stored in the arena if it is not dominated, or if it is a route with a negative reduced cost.
 	 */
-	private void addLabel(Label newLabel) {
-		List<Label> existingLabels = labelsPerNode.get(newLabel.getNode());
-		boolean dominated = false;
-		
-		List<Label> isDominated = new ArrayList<>();
-		for(Label other: existingLabels) {
-			//do the dominance check 
-			if(other.getCost()<=newLabel.getCost()&&other.getStartTime()<=newLabel.getStartTime()) {
-				dominated = true;
-				break;
-			} else if(other.getCost()>=newLabel.getCost()&&other.getStartTime()>=newLabel.getStartTime()) {
-				isDominated.add(other);
-			}
+	private void addLabel(double cost, int time, int node, int arc, int predecessor) {
+		int next = arena.size();
+		boolean added = labelsPerNode[node].add(cost, time, next);
+		boolean negativeRoute = node==dag.getSink().getNodeIndex()&&cost<-eps;
+		if(added||negativeRoute) {
+			arena.add(cost, time, node, arc, predecessor);
 		}
-		
-		if(!dominated) {
-			existingLabels.add(newLabel);
+		if(negativeRoute) {
+			addSinkLabel(next);
 		}
-		existingLabels.removeAll(isDominated);
-		if(newLabel.getNode().equals(dag.getSink())) {
-			bestLabels.add(newLabel);
+	}
+	
+	private void addSinkLabel(int label) {
+		if(numSinkLabels==sinkLabels.length) {
+			sinkLabels = Arrays.copyOf(sinkLabels, 2*sinkLabels.length);
 		}
+		sinkLabels[numSinkLabels++] = label;
 	}
 
-	private class Label implements Comparable<Label> {
-		private final CN_Node node;
-		private final double cost;
-		private final int startTime;
-		private final CN_Arc lastArc;
-		private final Label predecessor;
-		
-		public Label(CN_Node node, double cost, int startTime, Label predecessor, CN_Arc lastArc) {
-			super();
-			this.node = node;
-			this.cost = cost;
-			this.startTime = startTime;
-			this.lastArc = lastArc;
-			this.predecessor = predecessor;
-		}
+	public void setForbiddenArcs(BitSet forbiddenArcs) {
+		this.forbiddenArcs = forbiddenArcs;
+	}
 
-		public CN_Arc getLastArc() {
-			return lastArc;
-		}
+	/**
+	 * Method that sets the pool for labeling the waves of the network in parallel, or null for the sequential labeling.
+	 * The parallel labeling is used for the forward labeling only.
+	 */
+	public void setLabelingPool(ForkJoinPool labelingPool) {
+		this.labelingPool = labelingPool;
+	}
 
-		public CN_Node getNode() {
-			return node;
-		}
+	/**
+	 * Method that turns the pricing into a heuristic, which only extends the cheapest out-arcs and the cheapest labels
+	 * of every node. Use Integer.MAX_VALUE for both to price exactly.
+	 */
+	public void setHeuristic(int maxOutArcs, int maxLabelsPerNode) {
+		this.maxOutArcs = maxOutArcs;
+		this.maxLabelsPerNode = maxLabelsPerNode;
+	}
 
-		public double getCost() {
-			return cost;
-		}
+	public boolean isExact() {
+		return maxOutArcs==Integer.MAX_VALUE&&maxLabelsPerNode==Integer.MAX_VALUE;
+	}
 
-		public int getStartTime() {
-			return startTime;
-		}
+	public void setBidirectional(boolean bidirectional) {
+		this.bidirectional = bidirectional;
+	}
 
-		public Label getPredecessor() {
-			return predecessor;
-		}
+	public void setUseCompletionBound(boolean useCompletionBound) {
+		this.useCompletionBound = useCompletionBound;
+	}
 
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + getEnclosingInstance().hashCode();
-			result = prime * result + Objects.hash(cost, node, predecessor, startTime);
-			return result;
-		}
+	public long getNumExtensions() {
+		return numExtensions;
+	}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Label other = (Label) obj;
-			if (!getEnclosingInstance().equals(other.getEnclosingInstance()))
-				return false;
-			return cost == other.cost && Objects.equals(node, other.node)
-					&& Objects.equals(predecessor, other.predecessor) && startTime == other.startTime;
-		}
+	public long getNumPruned() {
+		return numPruned;
+	}
 
-		private ShortestPathWithResources getEnclosingInstance() {
-			return ShortestPathWithResources.this;
-		}
+	public long getNumPricingCalls() {
+		return numPricingCalls;
+	}
 
-		@Override
-		public String toString() {
-			return "Label [node=" + node + ", distance=" + cost + ", startTime=" + startTime+"]";
-		}
-		
-		public int compareTo(Label o) {
-			return Double.compare(this.cost, o.cost);
-		}
-		
+	public long getNumSkippedCalls() {
+		return numSkippedCalls;
 	}
 
-	public void setForbiddenArcs(List<CN_Arc> forbiddenArcs) {
-		this.forbiddenArcs = forbiddenArcs;
-		//System.out.println("nr forbidden: "+forbiddenArcs.size());
-//		for(CN_Arc a: forbiddenArcs) {
-//			System.out.println("Forbidden: "+a);
-//		}
+	public void resetStatistics() {
+		numExtensions = 0;
+		numPruned = 0;
+		numPricingCalls = 0;
+		numSkippedCalls = 0;
 	}
 	
 	
 	
 }
-
-
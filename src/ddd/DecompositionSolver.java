@@ -0,0 +1,390 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.Trip;
+
+/**
+ * Class that solves very large instances by decomposition. The trips are partitioned into k disjoint clusters, either by
+ * depot proximity or by time bands of equal size. By depot, every trip belongs to the region of its closest depot; with
+ * fewer clusters than depots, the depots are assigned to the clusters round-robin, and with more clusters, the regions
+ * with the most trips per cluster are split further into time bands. The clusters are solved in parallel with DDD or the
+ * full-network MIP, and the duties are stitched together. The clusters themselves do not overlap: afterwards, the duties
+ * with trips near a cluster border (within the overlap) are re-optimised together, and a final local search merges the
+ * clusters.
+ */
+public class DecompositionSolver {
+	public final static int BY_DEPOT = 0;
+	public final static int BY_TIME = 1;
+
+	private final Instance inst;
+	private final int numClusters;
+	private final int partitioning;
+	private final boolean useDDD;
+	private final boolean aggregate;
+	private final int timeLimit; //time limit per cluster
+	private final int overlap; //trips within this many minutes of a border are re-optimised
+	private final int threads;
+
+	private int maxBorderTrips = 100; //nr of trips re-optimised in one border problem
+	private int borderTimeLimit = 30;
+	private double localSearchTime = 30;
+
+	private List<List<Trip>> clusters;
+	private Map<Location,Integer> regionOfDepot; //region of the depots when partitioning by depot
+	private List<List<Integer>> regionBorders; //per region, the start times at which a new time band starts
+	private Solution solution;
+	private int stitchedCosts;
+	private double cpu;
+	private double cpuClusters;
+	private double cpuBorders;
+
+	private static int printDetail = 1;
+
+	public DecompositionSolver(Instance inst, int numClusters, int partitioning, boolean useDDD, boolean aggregate,
+			int timeLimit, int overlap) {
+		this.inst = inst;
+		this.numClusters = numClusters;
+		this.partitioning = partitioning;
+		this.useDDD = useDDD;
+		this.aggregate = aggregate;
+		this.timeLimit = timeLimit;
+		this.overlap = overlap;
+		this.threads = Math.min(numClusters, Runtime.getRuntime().availableProcessors());
+	}
+
+	public void solve() throws IloException {
+		long clock = System.nanoTime();
+		clusters = (partitioning==BY_DEPOT) ? partitionByDepot() : partitionByTime();
+
+		Set<Duty> duties = solveClusters();
+		cpuClusters = 1e-9*(System.nanoTime()-clock);
+		if(duties==null) {
+			return;
+		}
+		Solution stitched = new Solution(inst, duties);
+		stitchedCosts = stitched.getCosts();
+		if(printDetail>0) {
+			System.out.println("Stitched solution of "+clusters.size()+" clusters has costs "+stitchedCosts);
+		}
+
+		long clockBorders = System.nanoTime();
+		Set<Duty> reoptimised = reoptimiseBorders(duties);
+		cpuBorders = 1e-9*(System.nanoTime()-clockBorders);
+
+		solution = new LocalSearch(inst, Runtime.getRuntime().availableProcessors()).improve(new Solution(inst, reoptimised),
+				localSearchTime);
+		if(!solution.isFeasible()) {
+			throw new Error("The decomposed solution is not feasible");
+		}
+		checkSingleCoverage(solution);
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("Decomposition finished with costs "+solution.getCosts()+" in "+cpu+"s.");
+		}
+	}
+
+	/**
+	 * Method that checks that no trip is covered by two duties, which the feasibility check of the solution allows
+	 */
+	private void checkSingleCoverage(Solution sol) {
+		Set<Trip> covered = new LinkedHashSet<>();
+		for(Duty d: sol.getDuties()) {
+			for(Trip t: d.getTrips()) {
+				if(!covered.add(t)) {
+					throw new Error(t+" is covered twice in the decomposed solution");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method that assigns every trip to the region of its closest depot, and splits the regions into time bands such that
+	 * there are k clusters in total. Every region with trips gets a cluster, and the other clusters go one by one to the
+	 * region with the most trips per cluster.
+	 */
+	private List<List<Trip>> partitionByDepot() {
+		int numRegions = Math.min(numClusters, inst.getDepots().size());
+		regionOfDepot = new LinkedHashMap<>();
+		for(Location depot: inst.getDepots()) {
+			regionOfDepot.put(depot, inst.getDepots().indexOf(depot)%numRegions);
+		}
+		List<List<Trip>> regions = new ArrayList<>();
+		for(int r = 0; r<numRegions; r++) {
+			regions.add(new ArrayList<>());
+		}
+		for(Trip t: inst.getTrips()) {
+			regions.get(regionOfDepot.get(closestDepots(t).get(0))).add(t);
+		}
+
+		int[] bands = new int[numRegions];
+		int numAssigned = 0;
+		for(int r = 0; r<numRegions; r++) {
+			if(!regions.get(r).isEmpty()) {
+				bands[r] = 1;
+				numAssigned++;
+			}
+		}
+		for(; numAssigned<numClusters; numAssigned++) {
+			int largest = -1;
+			for(int r = 0; r<numRegions; r++) {
+				if(bands[r]>0&&bands[r]<regions.get(r).size()
+						&&(largest<0||regions.get(r).size()*bands[largest]>regions.get(largest).size()*bands[r])) {
+					largest = r;
+				}
+			}
+			if(largest<0) {
+				break; //every cluster has a single trip
+			}
+			bands[largest]++;
+		}
+
+		List<List<Trip>> parts = new ArrayList<>();
+		regionBorders = new ArrayList<>();
+		for(int r = 0; r<numRegions; r++) {
+			List<List<Trip>> regionBands = splitInBands(regions.get(r), bands[r]);
+			List<Integer> borders = new ArrayList<>();
+			for(int b = 0; b<regionBands.size(); b++) {
+				if(b>0) {
+					borders.add(regionBands.get(b).get(0).getStartTime());
+				}
+				parts.add(regionBands.get(b));
+			}
+			regionBorders.add(borders);
+		}
+		return parts;
+	}
+
+	private List<List<Trip>> partitionByTime() {
+		return splitInBands(inst.getTrips(), numClusters);
+	}
+
+	/**
+	 * Method that splits the trips, sorted on start time, into bands with the same number of trips
+	 */
+	private List<List<Trip>> splitInBands(List<Trip> trips, int numBands) {
+		List<Trip> sorted = new ArrayList<>(trips);
+		Collections.sort(sorted);
+		List<List<Trip>> bands = new ArrayList<>();
+		for(int b = 0; b<numBands; b++) {
+			int from = b*sorted.size()/numBands;
+			int to = (b+1)*sorted.size()/numBands;
+			bands.add(new ArrayList<>(sorted.subList(from, to)));
+		}
+		return bands;
+	}
+
+	/**
+	 * Method that returns the depots, sorted on the time to drive to the trip and back
+	 */
+	private List<Location> closestDepots(Trip t) {
+		List<Location> depots = new ArrayList<>(inst.getDepots());
+		depots.sort((d1,d2) -> Integer.compare(depotDistance(d1, t), depotDistance(d2, t)));
+		return depots;
+	}
+
+	private int depotDistance(Location depot, Trip t) {
+		return depot.getTimeTo(t.getStartLocation())+depot.getTimeFrom(t.getEndLocation());
+	}
+
+	private Set<Duty> solveClusters() throws IloException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Solution>> results = new ArrayList<>();
+		for(List<Trip> cluster: clusters) {
+			results.add(executor.submit(() -> solveCluster(cluster)));
+		}
+		Set<Duty> duties = new LinkedHashSet<>();
+		try {
+			for(int c = 0; c<clusters.size(); c++) {
+				Solution clusterSol = results.get(c).get();
+				if(clusterSol==null) {
+					System.out.println("No solution for cluster "+c+" with "+clusters.get(c).size()+" trips");
+					return null;
+				}
+				duties.addAll(clusterSol.getDuties());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Solving the clusters failed", e);
+		} finally {
+			executor.shutdown();
+		}
+		return duties;
+	}
+
+	private Solution solveCluster(List<Trip> cluster) throws IloException {
+		if(cluster.isEmpty()) {
+			return new Solution(inst, new LinkedHashSet<>());
+		}
+		Instance subInst = new Instance(inst, cluster);
+		if(useDDD) {
+			Solver_DDD solver = new Solver_DDD(subInst, true, 3, 3, false, timeLimit, aggregate, Integer.MAX_VALUE);
+			solver.solve();
+			return solver.getSolution();
+		}
+		SolverMIP solver = new SolverMIP(subInst, aggregate, timeLimit);
+		solver.setThreads(Math.max(1, Runtime.getRuntime().availableProcessors()/threads));
+		solver.solve();
+		return solver.getSolution();
+	}
+
+	/**
+	 * Method that re-optimises the duties that serve trips near a border between clusters. For time bands, the even and
+	 * the odd borders are handled in two phases, such that the border problems in one phase are disjoint.
+	 */
+	private Set<Duty> reoptimiseBorders(Set<Duty> duties) throws IloException {
+		List<Duty> current = new ArrayList<>(duties);
+		LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(inst, aggregate, threads, 1);
+		lns.setSubTimeLimit(borderTimeLimit);
+		if(partitioning==BY_TIME) {
+			for(int phase = 0; phase<2; phase++) {
+				//a duty that spans several bands joins at most one border problem per phase
+				Set<Duty> taken = new LinkedHashSet<>();
+				List<Set<Duty>> borders = new ArrayList<>();
+				for(int c = phase; c+1<clusters.size(); c += 2) {
+					if(clusters.get(c+1).isEmpty()) {
+						continue;
+					}
+					int border = clusters.get(c+1).get(0).getStartTime();
+					borders.addAll(split(dutiesNear(current, t -> Math.abs(t.getStartTime()-border)<=overlap, taken)));
+				}
+				current = solveBorders(current, borders, lns);
+			}
+		} else {
+			//borders between the regions of the depots, and between the time bands within a region
+			List<Set<Duty>> borders = split(dutiesNear(current, t -> {
+				List<Location> depots = closestDepots(t);
+				int region = regionOfDepot.get(depots.get(0));
+				if(depots.size()>1&&region!=regionOfDepot.get(depots.get(1))
+						&&depotDistance(depots.get(1), t)-depotDistance(depots.get(0), t)<=overlap) {
+					return true;
+				}
+				for(int border: regionBorders.get(region)) {
+					if(Math.abs(t.getStartTime()-border)<=overlap) {
+						return true;
+					}
+				}
+				return false;
+			}, new LinkedHashSet<>()));
+			current = solveBorders(current, borders, lns);
+		}
+		return new LinkedHashSet<>(current);
+	}
+
+	/**
+	 * Method that returns the duties with a trip near the border that are not taken yet, and marks them as taken
+	 */
+	private List<Duty> dutiesNear(List<Duty> duties, java.util.function.Predicate<Trip> nearBorder, Set<Duty> taken) {
+		List<Duty> near = new ArrayList<>();
+		for(Duty d: duties) {
+			if(taken.contains(d)) {
+				continue;
+			}
+			for(Trip t: d.getTrips()) {
+				if(nearBorder.test(t)) {
+					near.add(d);
+					taken.add(d);
+					break;
+				}
+			}
+		}
+		near.sort((d1,d2) -> d1.getTrips().get(0).compareTo(d2.getTrips().get(0)));
+		return near;
+	}
+
+	/**
+	 * Method that splits the border duties, sorted on the start of their first trip, into groups of limited size
+	 */
+	private List<Set<Duty>> split(List<Duty> near) {
+		List<Set<Duty>> groups = new ArrayList<>();
+		Set<Duty> group = new LinkedHashSet<>();
+		int numTrips = 0;
+		for(Duty d: near) {
+			if(numTrips+d.getTrips().size()>maxBorderTrips&&group.size()>1) {
+				groups.add(group);
+				group = new LinkedHashSet<>();
+				numTrips = 0;
+			}
+			group.add(d);
+			numTrips += d.getTrips().size();
+		}
+		if(group.size()>1) {
+			groups.add(group);
+		}
+		return groups;
+	}
+
+	private List<Duty> solveBorders(List<Duty> duties, List<Set<Duty>> borders, LargeNeighbourhoodSearch lns) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Set<Duty>>> results = new ArrayList<>();
+		for(Set<Duty> border: borders) {
+			results.add(executor.submit(() -> lns.reoptimise(border)));
+		}
+		List<Duty> updated = new ArrayList<>(duties);
+		try {
+			for(int b = 0; b<borders.size(); b++) {
+				Set<Duty> repaired = results.get(b).get();
+				if(repaired!=null) {
+					updated.removeAll(borders.get(b));
+					updated.addAll(repaired);
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Re-optimising the borders failed", e);
+		} finally {
+			executor.shutdown();
+		}
+		if(printDetail>0) {
+			System.out.println("Re-optimised "+borders.size()+" border problems");
+		}
+		return updated;
+	}
+
+	public Solution getSolution() {
+		return solution;
+	}
+
+	public int getStitchedCosts() {
+		return stitchedCosts;
+	}
+
+	public List<List<Trip>> getClusters() {
+		return clusters;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+
+	public double getCpuClusters() {
+		return cpuClusters;
+	}
+
+	public double getCpuBorders() {
+		return cpuBorders;
+	}
+
+	public void setMaxBorderTrips(int maxBorderTrips) {
+		this.maxBorderTrips = maxBorderTrips;
+	}
+
+	public void setBorderTimeLimit(int borderTimeLimit) {
+		this.borderTimeLimit = borderTimeLimit;
+	}
+
+	public void setLocalSearchTime(double localSearchTime) {
+		this.localSearchTime = localSearchTime;
+	}
+}
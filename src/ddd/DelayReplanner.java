@@ -0,0 +1,150 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Solution;
+import problem.TimetableChange;
+import problem.Trip;
+
+/**
+ * Class that re-plans a published schedule within a latency budget when a trip is delayed beyond its deviation window.
+ * First, the duty of the delayed trip is re-timed within the slack of its trips. If that is infeasible, the duty is split
+ * at the first trip that cannot be reached and the remaining trips are reinserted greedily. With the remaining time, the
+ * affected duties and the duties with trips around the delay are re-solved with the full-network MIP. The latencies are
+ * measured from the start of the re-planning, up to the end of every phase.
+ */
+public class DelayReplanner {
+	private final Instance inst;
+	private final Solution schedule;
+
+	private boolean aggregate = true;
+	private int neighbourhoodSize = 80; //nr of trips in the restricted re-solve
+	private double safetyMargin = 0.5; //seconds kept free for building the sub-MIP
+
+	private static int printDetail = 1;
+
+	public DelayReplanner(Instance inst, Solution schedule) {
+		this.inst = inst;
+		this.schedule = schedule;
+	}
+
+	/**
+	 * Method that returns a feasible schedule in which the trip departs no earlier than the given time, found within the
+	 * deadline (in seconds) if possible. The trip gets a new scheduled start such that its window starts at that time.
+	 */
+	public ReplanResult replan(Trip delayed, int earliestDeparture, double deadline) throws IloException {
+		long clock = System.nanoTime();
+		TimetableChange change = new TimetableChange().retimeTrip(delayed, earliestDeparture+inst.getMaxDeviation());
+		Instance changed = change.apply(inst);
+		int maxDev = changed.getMaxDeviation();
+
+		//phase 1: re-time the duty of the delayed trip within the slack of its trips
+		Set<Duty> unaffected = new LinkedHashSet<>();
+		Duty affected = null;
+		for(Duty d: schedule.getDuties()) {
+			List<Trip> trips = new ArrayList<>();
+			for(Trip t: d.getTrips()) {
+				trips.add(change.getUpdated(t));
+			}
+			Duty mapped = Duty.fromTrips(d.getDepot(), trips, changed);
+			if(d.getTrips().contains(delayed)) {
+				affected = mapped;
+			} else {
+				unaffected.add(mapped);
+			}
+		}
+		if(affected==null) {
+			throw new Error(delayed+" is not in the schedule");
+		}
+		boolean retimed = new DutyTimeline(affected.getDepot(), affected.getTrips(), maxDev).isFeasible();
+		double latencyLocal = 1e-9*(System.nanoTime()-clock);
+		if(retimed) {
+			Set<Duty> duties = new LinkedHashSet<>(unaffected);
+			duties.add(affected);
+			return finish(new Solution(changed, duties), ReplanResult.LOCAL, latencyLocal, latencyLocal, clock, deadline);
+		}
+
+		//phase 2: split the duty at the delayed trip and reinsert the remaining trips
+		Set<Duty> infeasible = new LinkedHashSet<>();
+		infeasible.add(affected);
+		Solution repaired = new RepairHeuristic(changed).repair(unaffected, infeasible);
+		double latencyRepair = 1e-9*(System.nanoTime()-clock);
+		if(repaired==null) {
+			return finish(null, ReplanResult.REPAIR, latencyLocal, latencyRepair, clock, deadline);
+		}
+
+		//phase 3: re-solve the duties around the delayed trip in the remaining time
+		int subTimeLimit = (int) (deadline-latencyRepair-safetyMargin);
+		if(subTimeLimit<1) {
+			return finish(repaired, ReplanResult.REPAIR, latencyLocal, latencyRepair, clock, deadline);
+		}
+		Trip updated = change.getUpdated(delayed);
+		LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(changed, aggregate, 1, 0);
+		lns.setSubTimeLimit(subTimeLimit);
+		Set<Duty> neighbourhood = selectNeighbourhood(repaired.getDuties(), updated);
+		Set<Duty> resolved = lns.reoptimise(neighbourhood);
+		if(resolved==null) {
+			return finish(repaired, ReplanResult.REPAIR, latencyLocal, latencyRepair, clock, deadline);
+		}
+		Set<Duty> duties = new LinkedHashSet<>(repaired.getDuties());
+		duties.removeAll(neighbourhood);
+		duties.addAll(resolved);
+		return finish(new Solution(changed, duties), ReplanResult.RESOLVE, latencyLocal, latencyRepair, clock, deadline);
+	}
+
+	/**
+	 * Method that selects the duties with trips closest in time to the delayed trip, until the neighbourhood has enough
+	 * trips
+	 */
+	private Set<Duty> selectNeighbourhood(Set<Duty> duties, Trip delayed) {
+		List<Duty> ordered = new ArrayList<>(duties);
+		ordered.sort((d1,d2) -> Integer.compare(distance(d1, delayed), distance(d2, delayed)));
+		Set<Duty> neighbourhood = new LinkedHashSet<>();
+		int numTrips = 0;
+		for(Duty d: ordered) {
+			if(numTrips>=neighbourhoodSize) {
+				break;
+			}
+			neighbourhood.add(d);
+			numTrips += d.getTrips().size();
+		}
+		return neighbourhood;
+	}
+
+	private int distance(Duty d, Trip delayed) {
+		int closest = Integer.MAX_VALUE;
+		for(Trip t: d.getTrips()) {
+			closest = Math.min(closest, Math.abs(t.getStartTime()-delayed.getStartTime()));
+		}
+		return closest;
+	}
+
+	private ReplanResult finish(Solution solution, int phase, double latencyLocal, double latencyRepair, long clock,
+			double deadline) throws IloException {
+		ReplanResult result = new ReplanResult(solution, phase, latencyLocal, latencyRepair,
+				1e-9*(System.nanoTime()-clock), deadline);
+		if(solution!=null&&!solution.isFeasible()) {
+			throw new Error("The re-planned schedule is not feasible");
+		}
+		if(printDetail>0) {
+			System.out.println(result+((solution==null) ? ", no feasible schedule" : ", costs "+solution.getCosts()));
+		}
+		return result;
+	}
+
+	public void setAggregate(boolean aggregate) {
+		this.aggregate = aggregate;
+	}
+
+	public void setNeighbourhoodSize(int neighbourhoodSize) {
+		this.neighbourhoodSize = neighbourhoodSize;
+	}
+
+	public void setSafetyMargin(double safetyMargin) {
+		this.safetyMargin = safetyMargin;
+	}
+}
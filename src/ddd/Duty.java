@@ -46,6 +46,31 @@ public class Duty {
 		}
 	}
 	
+	/**
+	 * Method that creates a duty from a sequence of trips, without a time-space network. The arcs have the actual travel
+	 * times, such that the model costs equal the actual costs.
+	 */
+	public static Duty fromTrips(Location depot, List<Trip> trips, Instance inst) {
+		List<TimedArc> arcs = new ArrayList<>();
+		TimedNode current = new TimedNode(depot, inst.getStartHorizon());
+		Location curLoc = depot;
+		for(Trip t: trips) {
+			if(curLoc!=t.getStartLocation()) {
+				int type = (curLoc==depot) ? TimedArc.PULLOUT_ARC : TimedArc.DEADHEADING_ARC;
+				TimedNode next = new TimedNode(t.getStartLocation(), t.getStartTime());
+				arcs.add(new TimedArc(current, next, type, Integer.MAX_VALUE, curLoc.getTimeTo(t.getStartLocation())));
+				current = next;
+			}
+			TimedNode end = new TimedNode(t.getEndLocation(), t.getEndTime());
+			arcs.add(new TimedArc(current, end, TimedArc.TRIP_ARC, t, 1, t.getTripTime()));
+			current = end;
+			curLoc = t.getEndLocation();
+		}
+		TimedNode endDepot = new TimedNode(depot, inst.getEndHorizon());
+		arcs.add(new TimedArc(current, endDepot, TimedArc.PULLIN_ARC, Integer.MAX_VALUE, depot.getTimeFrom(curLoc)));
+		return new Duty(arcs, inst, false);
+	}
+	
 	/**
 	 * Method that checks whether a sequence of trips is feasible, and returns a list of timednodes if not
 	 */
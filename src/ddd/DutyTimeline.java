@@ -0,0 +1,236 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.List;
+
+import problem.Location;
+import problem.Trip;
+
+/**
+ * Class that stores the time slack of a sequence of trips from a depot. For every trip, it keeps the earliest departure
+ * given its predecessors and the latest departure given its successors, within the windows of maxDeviation around the
+ * scheduled start times. With these, inserting, removing or replacing a trip can be checked in O(1). Changing the
+ * sequence updates the timeline in O(k).
+ */
+public class DutyTimeline {
+	public final static int MISSING_TRAVEL_THRESHOLD = 1000; //travel times from this value on are missing in the data
+
+	private final Location depot;
+	private final int maxDev;
+	private final List<Trip> trips;
+
+	private int[] earliest; //earliest departure of every trip, when leaving the depot at time zero
+	private int[] latest; //latest departure of every trip such that all successors are on time
+	private int firstViolation; //index of the first trip that cannot depart in time, or the number of trips
+
+	public DutyTimeline(Location depot, List<Trip> trips, int maxDev) {
+		this.depot = depot;
+		this.maxDev = maxDev;
+		this.trips = new ArrayList<>(trips);
+		update();
+	}
+
+	/**
+	 * Method that recomputes the earliest and latest departures
+	 */
+	private void update() {
+		int k = trips.size();
+		earliest = new int[k];
+		latest = new int[k];
+		firstViolation = k;
+
+		int time = 0;
+		Location curLoc = depot;
+		for(int i = 0; i<k; i++) {
+			Trip t = trips.get(i);
+			int travel = curLoc.getTimeTo(t.getStartLocation());
+			time += travel;
+			if(travel>=MISSING_TRAVEL_THRESHOLD||time>t.getStartTime()+maxDev) {
+				firstViolation = i;
+				break;
+			}
+			earliest[i] = Math.max(time, t.getStartTime()-maxDev);
+			time = earliest[i]+t.getTripTime();
+			curLoc = t.getEndLocation();
+		}
+
+		if(k>0) {
+			latest[k-1] = trips.get(k-1).getStartTime()+maxDev;
+		}
+		for(int i = k-2; i>=0; i--) {
+			Trip t = trips.get(i);
+			int travel = t.getEndLocation().getTimeTo(trips.get(i+1).getStartLocation());
+			latest[i] = Math.min(t.getStartTime()+maxDev, latest[i+1]-travel-t.getTripTime());
+		}
+	}
+
+	public boolean isFeasible() {
+		return firstViolation==trips.size()&&(trips.isEmpty()||getLastLocation().getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD);
+	}
+
+	/**
+	 * Method that checks whether the trip can be inserted before the trip at position pos
+	 */
+	public boolean canInsert(int pos, Trip t) {
+		if(!isFeasible()) {
+			return false;
+		}
+		return fits(pos-1, t, pos);
+	}
+
+	/**
+	 * Method that checks whether the trip at position pos can be removed
+	 */
+	public boolean canRemove(int pos) {
+		if(!isFeasible()) {
+			return false;
+		}
+		Location from = locationBefore(pos);
+		if(pos==trips.size()-1) {
+			return from.getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD;
+		}
+		int travel = from.getTimeTo(trips.get(pos+1).getStartLocation());
+		return travel<MISSING_TRAVEL_THRESHOLD&&readyTime(pos-1)+travel<=latest[pos+1];
+	}
+
+	/**
+	 * Method that checks whether the trip at position pos can be replaced by the given trip
+	 */
+	public boolean canReplace(int pos, Trip t) {
+		if(!isFeasible()) {
+			return false;
+		}
+		return fits(pos-1, t, pos+1);
+	}
+
+	/**
+	 * Method that checks whether the trip fits between the trips at positions prev and next, where prev can be -1 for the
+	 * depot and next can be the number of trips for the depot
+	 */
+	private boolean fits(int prev, Trip t, int next) {
+		Location from = locationBefore(prev+1);
+		int travelIn = from.getTimeTo(t.getStartLocation());
+		int arrival = readyTime(prev)+travelIn;
+		if(travelIn>=MISSING_TRAVEL_THRESHOLD||arrival>t.getStartTime()+maxDev) {
+			return false;
+		}
+		int departure = Math.max(arrival, t.getStartTime()-maxDev);
+		if(next>=trips.size()) {
+			return t.getEndLocation().getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD;
+		}
+		int travelOut = t.getEndLocation().getTimeTo(trips.get(next).getStartLocation());
+		return travelOut<MISSING_TRAVEL_THRESHOLD&&departure+t.getTripTime()+travelOut<=latest[next];
+	}
+
+	/**
+	 * Method that checks whether the trips from position from up to (excluding) position to can be replaced by the given
+	 * segment of trips, in O(length of the segment)
+	 */
+	public boolean canReplaceSegment(int from, int to, List<Trip> segment) {
+		if(!isFeasible()) {
+			return false;
+		}
+		int time = readyTime(from-1);
+		Location curLoc = locationBefore(from);
+		for(Trip t: segment) {
+			int travel = curLoc.getTimeTo(t.getStartLocation());
+			time += travel;
+			if(travel>=MISSING_TRAVEL_THRESHOLD||time>t.getStartTime()+maxDev) {
+				return false;
+			}
+			time = Math.max(time, t.getStartTime()-maxDev)+t.getTripTime();
+			curLoc = t.getEndLocation();
+		}
+		if(to>=trips.size()) {
+			return curLoc.getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD;
+		}
+		int travel = curLoc.getTimeTo(trips.get(to).getStartLocation());
+		return travel<MISSING_TRAVEL_THRESHOLD&&time+travel<=latest[to];
+	}
+
+	/**
+	 * Method that checks whether the trips up to position i of this duty, followed by the trips from position j of the other
+	 * duty, form a feasible duty from the depot of this duty
+	 */
+	public boolean canConnect(int i, DutyTimeline other, int j) {
+		if(!isFeasible()||!other.isFeasible()) {
+			return false;
+		}
+		Location from = locationBefore(i+1);
+		if(j>=other.size()) {
+			return from.getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD;
+		}
+		int travel = from.getTimeTo(other.trips.get(j).getStartLocation());
+		return travel<MISSING_TRAVEL_THRESHOLD&&readyTime(i)+travel<=other.latest[j]
+				&&other.getLastLocation().getTimeTo(depot)<MISSING_TRAVEL_THRESHOLD;
+	}
+
+	/**
+	 * Method that checks whether the duty can be operated from another depot
+	 */
+	public boolean canUseDepot(Location otherDepot) {
+		if(!isFeasible()||trips.isEmpty()) {
+			return false;
+		}
+		int travel = otherDepot.getTimeTo(trips.get(0).getStartLocation());
+		return travel<MISSING_TRAVEL_THRESHOLD&&travel<=latest[0]&&getLastLocation().getTimeTo(otherDepot)<MISSING_TRAVEL_THRESHOLD;
+	}
+
+	/**
+	 * Method that returns the time at which the vehicle is ready after the trip at position i, or zero for the depot
+	 */
+	private int readyTime(int i) {
+		if(i<0) {
+			return 0;
+		}
+		return earliest[i]+trips.get(i).getTripTime();
+	}
+
+	private Location locationBefore(int pos) {
+		return (pos==0) ? depot : trips.get(pos-1).getEndLocation();
+	}
+
+	public void insert(int pos, Trip t) {
+		trips.add(pos, t);
+		update();
+	}
+
+	public Trip remove(int pos) {
+		Trip removed = trips.remove(pos);
+		update();
+		return removed;
+	}
+
+	public Trip replace(int pos, Trip t) {
+		Trip replaced = trips.set(pos, t);
+		update();
+		return replaced;
+	}
+
+	public int getFirstViolation() {
+		return firstViolation;
+	}
+
+	public int getEarliestDeparture(int i) {
+		return earliest[i];
+	}
+
+	public int getLatestDeparture(int i) {
+		return latest[i];
+	}
+
+	public Location getDepot() {
+		return depot;
+	}
+
+	public List<Trip> getTrips() {
+		return trips;
+	}
+
+	public int size() {
+		return trips.size();
+	}
+
+	private Location getLastLocation() {
+		return trips.get(trips.size()-1).getEndLocation();
+	}
+}
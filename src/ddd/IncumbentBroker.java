@@ -0,0 +1,100 @@
+package ddd;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Solution;
+import util.Pair;
+
+/**
+ * Class that exchanges work and solutions between the DDD loop and the upper bound worker. The DDD loop posts the latest
+ * LB solution that is infeasible in continuous time, and the worker publishes every repaired solution that improves.
+ * Only the most recent repair job is kept, as older LB solutions are outdated.
+ */
+public class IncumbentBroker {
+	private final Instance inst;
+	private Solution best;
+	private int bestCosts = Integer.MAX_VALUE;
+	private int numImprovements;
+
+	private Set<Duty> pendingFeasible;
+	private Set<Duty> pendingInfeasible;
+	private boolean closed;
+
+	public IncumbentBroker(Instance inst) {
+		this.inst = inst;
+	}
+
+	/**
+	 * Method that posts a new repair job, replacing the pending one
+	 */
+	public synchronized void postRepairJob(Set<Duty> feasible, Set<Duty> infeasible) {
+		pendingFeasible = copy(feasible);
+		pendingInfeasible = copy(infeasible);
+		notifyAll();
+	}
+
+	/**
+	 * Method that waits for the next repair job, a pair of the feasible and the infeasible duties.
+	 * Returns null if the broker is closed.
+	 */
+	public synchronized Pair<Set<Duty>,Set<Duty>> takeRepairJob() throws InterruptedException {
+		while(pendingInfeasible==null&&!closed) {
+			wait();
+		}
+		if(closed) {
+			return null;
+		}
+		Pair<Set<Duty>,Set<Duty>> job = new Pair<>(pendingFeasible, pendingInfeasible);
+		pendingFeasible = null;
+		pendingInfeasible = null;
+		return job;
+	}
+
+	/**
+	 * Method that offers a feasible solution, returns true if it improves the best known solution
+	 */
+	public synchronized boolean offer(Solution sol) throws IloException {
+		int costs = sol.getCosts();
+		if(costs<bestCosts) {
+			bestCosts = costs;
+			best = sol;
+			numImprovements++;
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	public synchronized Solution getBest() {
+		return best;
+	}
+
+	public synchronized int getBestCosts() {
+		return bestCosts;
+	}
+
+	public synchronized int getNumImprovements() {
+		return numImprovements;
+	}
+
+	/**
+	 * Method that copies duties, such that the worker does not share state with the DDD loop
+	 */
+	private Set<Duty> copy(Set<Duty> duties) {
+		Set<Duty> copies = new LinkedHashSet<>();
+		for(Duty d: duties) {
+			copies.add(new Duty(d.getArcs(), inst, d.isCycle()));
+		}
+		return copies;
+	}
+}
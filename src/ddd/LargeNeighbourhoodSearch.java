@@ -0,0 +1,231 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.Trip;
+
+/**
+ * Class that improves a solution with large-neighbourhood search. A neighbourhood removes a set of related duties (by
+ * time band, by geography or by depot), and their trips are re-optimised exactly with the full-network SolverMIP on the
+ * sub-instance under a short time limit. The improvement is accepted if the new duties are cheaper. In every round, one
+ * neighbourhood per thread is destroyed, such that the neighbourhoods are disjoint and can be solved in parallel, each
+ * with its own CPLEX environment. The cores are divided over the parallel sub-MIPs.
+ */
+public class LargeNeighbourhoodSearch {
+	public final static int TIME_BAND = 0;
+	public final static int GEOGRAPHY = 1;
+	public final static int DEPOT = 2;
+	private final static String[] NAMES = {"time band", "geography", "depot"};
+
+	private final Instance inst;
+	private final boolean aggregate;
+	private final int threads;
+	private final Random random;
+
+	private int neighbourhoodSize = 80; //nr of trips that is re-optimised in one neighbourhood
+	private int subTimeLimit = 10; //time limit of one sub-MIP
+	private int[] numTried;
+	private int[] numImproved;
+	private double cpu;
+
+	private static int printDetail = 1;
+
+	public LargeNeighbourhoodSearch(Instance inst, boolean aggregate, int threads, int seed) {
+		this.inst = inst;
+		this.aggregate = aggregate;
+		this.threads = threads;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Method that improves the solution until the time budget (in seconds) is used
+	 */
+	public Solution improve(Solution start, double timeBudget) throws IloException {
+		long clock = System.nanoTime();
+		List<Duty> duties = new ArrayList<>(start.getDuties());
+		numTried = new int[3];
+		numImproved = new int[3];
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			int round = 0;
+			while(1e-9*(System.nanoTime()-clock)+subTimeLimit<timeBudget) {
+				//select disjoint neighbourhoods
+				Set<Duty> taken = new LinkedHashSet<>();
+				List<Set<Duty>> neighbourhoods = new ArrayList<>();
+				List<Integer> types = new ArrayList<>();
+				for(int thread = 0; thread<threads; thread++) {
+					int type = (round*threads+thread)%3;
+					Set<Duty> destroyed = selectNeighbourhood(type, duties, taken);
+					if(!destroyed.isEmpty()) {
+						taken.addAll(destroyed);
+						neighbourhoods.add(destroyed);
+						types.add(type);
+					}
+				}
+				round++;
+				if(neighbourhoods.isEmpty()) {
+					break;
+				}
+
+				List<Future<Set<Duty>>> results = new ArrayList<>();
+				for(Set<Duty> destroyed: neighbourhoods) {
+					results.add(executor.submit(() -> reoptimise(destroyed)));
+				}
+				for(int n = 0; n<neighbourhoods.size(); n++) {
+					Set<Duty> repaired = results.get(n).get();
+					numTried[types.get(n)]++;
+					if(repaired!=null) {
+						duties.removeAll(neighbourhoods.get(n));
+						duties.addAll(repaired);
+						numImproved[types.get(n)]++;
+					}
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Re-optimising the neighbourhoods failed", e);
+		} finally {
+			executor.shutdown();
+		}
+
+		Solution sol = new Solution(inst, new LinkedHashSet<>(duties));
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("LNS improved costs from "+start.getCosts()+" to "+sol.getCosts()+" in "+cpu+"s.");
+			for(int type = 0; type<3; type++) {
+				System.out.println("Neighbourhood "+NAMES[type]+": "+numImproved[type]+" of "+numTried[type]+" improved");
+			}
+		}
+		return sol;
+	}
+
+	/**
+	 * Method that selects related duties that are not taken yet, until the neighbourhood has enough trips
+	 */
+	private Set<Duty> selectNeighbourhood(int type, List<Duty> duties, Set<Duty> taken) {
+		List<Duty> candidates = new ArrayList<>();
+		for(Duty d: duties) {
+			if(!taken.contains(d)) {
+				candidates.add(d);
+			}
+		}
+		if(candidates.isEmpty()) {
+			return new LinkedHashSet<>();
+		}
+		List<Duty> ordered;
+		if(type==TIME_BAND) {
+			Trip seed = inst.getTrips().get(random.nextInt(inst.getNumTrips()));
+			ordered = orderBy(candidates, d -> {
+				int closest = Integer.MAX_VALUE;
+				for(Trip t: d.getTrips()) {
+					closest = Math.min(closest, Math.abs(t.getStartTime()-seed.getStartTime()));
+				}
+				return closest;
+			});
+		} else if(type==GEOGRAPHY) {
+			Location seed = inst.getStations().get(random.nextInt(inst.getStations().size()));
+			ordered = orderBy(candidates, d -> {
+				int closest = Integer.MAX_VALUE;
+				for(Trip t: d.getTrips()) {
+					closest = Math.min(closest, seed.getTimeTo(t.getStartLocation()));
+					closest = Math.min(closest, seed.getTimeTo(t.getEndLocation()));
+				}
+				return closest;
+			});
+		} else {
+			Location seed = inst.getDepots().get(random.nextInt(inst.getDepots().size()));
+			ordered = new ArrayList<>();
+			for(Duty d: candidates) {
+				if(d.getDepot()==seed) {
+					ordered.add(d);
+				}
+			}
+			Collections.shuffle(ordered, random);
+		}
+
+		Set<Duty> destroyed = new LinkedHashSet<>();
+		int numTrips = 0;
+		for(Duty d: ordered) {
+			if(numTrips>=neighbourhoodSize) {
+				break;
+			}
+			destroyed.add(d);
+			numTrips += d.getTrips().size();
+		}
+		if(destroyed.size()<2) {
+			return new LinkedHashSet<>(); //a single duty cannot be improved by the sub-MIP
+		}
+		return destroyed;
+	}
+
+	private List<Duty> orderBy(List<Duty> candidates, ToIntFunction<Duty> distance) {
+		List<Duty> ordered = new ArrayList<>(candidates);
+		Collections.shuffle(ordered, random); //random tie breaking
+		ordered.sort((d1,d2) -> Integer.compare(distance.applyAsInt(d1), distance.applyAsInt(d2)));
+		return ordered;
+	}
+
+	/**
+	 * Method that solves the trips of the destroyed duties with the full-network MIP, and returns the new duties if they
+	 * are cheaper, or null otherwise
+	 */
+	Set<Duty> reoptimise(Set<Duty> destroyed) throws IloException {
+		List<Trip> trips = new ArrayList<>();
+		int oldCosts = 0;
+		for(Duty d: destroyed) {
+			trips.addAll(d.getTrips());
+			d.feasibilityCheck(inst.getMaxDeviation(), false);
+			d.computeActualCosts();
+			oldCosts += d.getActualCosts();
+		}
+		Collections.sort(trips);
+		Instance subInst = new Instance(inst, trips);
+		SolverMIP subSolver = new SolverMIP(subInst, aggregate, subTimeLimit);
+		subSolver.setThreads(Math.max(1, Runtime.getRuntime().availableProcessors()/threads));
+		try {
+			subSolver.solve();
+		} catch (IloException e) {
+			return null; //no solution within the time limit
+		}
+		if(subSolver.getSolution()==null) {
+			return null;
+		}
+		if(subSolver.getUB()<oldCosts) {
+			return subSolver.getSolution().getDuties();
+		}
+		return null;
+	}
+
+	public void setNeighbourhoodSize(int neighbourhoodSize) {
+		this.neighbourhoodSize = neighbourhoodSize;
+	}
+
+	public void setSubTimeLimit(int subTimeLimit) {
+		this.subTimeLimit = subTimeLimit;
+	}
+
+	public int[] getNumTried() {
+		return numTried;
+	}
+
+	public int[] getNumImproved() {
+		return numImproved;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+}
@@ -0,0 +1,471 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.Trip;
+
+/**
+ * Class that improves a solution with a best-improvement local search on the trip sequences of the duties. The moves
+ * are relocate (move a trip to another duty), 2-opt* (exchange the tails of two duties), cross-exchange (swap segments of
+ * at most two trips), depot-swap (operate a duty from another depot) and vehicle elimination (reinsert all trips of a
+ * duty). Feasibility is checked with the time slack of the DutyTimeline, and cost deltas use a travel time matrix.
+ * In every round, the neighbourhoods of the duties are evaluated in parallel and the best move is applied.
+ */
+public class LocalSearch {
+	private final static int RELOCATE = 0;
+	private final static int TWO_OPT = 1;
+	private final static int CROSS = 2;
+	private final static int DEPOT_SWAP = 3;
+	private final static int MAX_SEGMENT = 2;
+
+	private final Instance inst;
+	private final int maxDev;
+	private final int threads;
+	private final int[][] travel; //travel times between location indices
+
+	private List<DutyTimeline> duties;
+	private int[] numMoves;
+	private int numEliminated;
+	private double cpu;
+
+	private static int printDetail = 1;
+
+	public LocalSearch(Instance inst, int threads) {
+		this.inst = inst;
+		this.maxDev = inst.getMaxDeviation();
+		this.threads = threads;
+		int n = 0;
+		for(Location l: inst.getLocations()) {
+			n = Math.max(n, l.getIndex()+1);
+		}
+		travel = new int[n][n];
+		for(Location from: inst.getLocations()) {
+			for(Location to: inst.getLocations()) {
+				travel[from.getIndex()][to.getIndex()] = from.getTimeTo(to);
+			}
+		}
+	}
+
+	/**
+	 * Method that improves the solution until no improving move exists or the time budget (in seconds) is used
+	 */
+	public Solution improve(Solution start, double timeBudget) throws IloException {
+		long clock = System.nanoTime();
+		duties = new ArrayList<>();
+		for(Duty d: start.getDuties()) {
+			duties.add(new DutyTimeline(d.getDepot(), d.getTrips(), maxDev));
+		}
+		numMoves = new int[4];
+		numEliminated = 0;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			while(1e-9*(System.nanoTime()-clock)<timeBudget) {
+				if(applyBestMoves(executor)==0&&!eliminateVehicle()) {
+					break;
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Set<Duty> improved = new LinkedHashSet<>();
+		for(DutyTimeline timeline: duties) {
+			improved.add(Duty.fromTrips(timeline.getDepot(), timeline.getTrips(), inst));
+		}
+		Solution sol = new Solution(inst, improved);
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("Local search improved costs from "+start.getCosts()+" to "+sol.getCosts()+" in "+cpu+"s. Moves: "
+					+numMoves[RELOCATE]+" relocate, "+numMoves[TWO_OPT]+" 2-opt*, "+numMoves[CROSS]+" cross, "
+					+numMoves[DEPOT_SWAP]+" depot-swap, "+numEliminated+" eliminated vehicles");
+		}
+		return sol;
+	}
+
+	/**
+	 * Method that evaluates the best move of every duty in parallel, and applies the improving moves in order of their
+	 * delta as long as they do not touch a duty that was already changed in this round. Returns the number of moves.
+	 */
+	private int applyBestMoves(ExecutorService executor) {
+		List<Future<List<Move>>> results = new ArrayList<>();
+		for(int thread = 0; thread<threads; thread++) {
+			final int first = thread;
+			results.add(executor.submit(() -> {
+				List<Move> moves = new ArrayList<>();
+				for(int a = first; a<duties.size(); a += threads) {
+					Move best = bestMoveFrom(a);
+					if(best!=null&&best.delta<0) {
+						moves.add(best);
+					}
+				}
+				return moves;
+			}));
+		}
+		List<Move> moves = new ArrayList<>();
+		try {
+			for(Future<List<Move>> result: results) {
+				moves.addAll(result.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Evaluating the neighbourhoods failed", e);
+		}
+		moves.sort((m1,m2) -> (m1==m2) ? 0 : (better(m1, m2)==m1) ? -1 : 1);
+
+		Set<Integer> touched = new HashSet<>();
+		int applied = 0;
+		for(Move m: moves) {
+			if(touched.contains(m.a)||(m.b>=0&&touched.contains(m.b))) {
+				continue;
+			}
+			apply(m);
+			numMoves[m.type]++;
+			applied++;
+			touched.add(m.a);
+			touched.add(m.b);
+		}
+		duties.removeIf(timeline -> timeline.size()==0);
+		return applied;
+	}
+
+	/**
+	 * Method that returns the best move that changes duty a, and for moves on two duties, a duty b with a higher index
+	 * (relocate is evaluated in both directions)
+	 */
+	private Move bestMoveFrom(int a) {
+		DutyTimeline dutyA = duties.get(a);
+		Move best = null;
+		for(Location depot: inst.getDepots()) {
+			if(depot!=dutyA.getDepot()&&dutyA.canUseDepot(depot)) {
+				Move m = new Move(DEPOT_SWAP, a, -1, -1, -1, depotSwapDelta(dutyA, depot));
+				m.depot = depot;
+				best = better(best, m);
+			}
+		}
+		for(int b = 0; b<duties.size(); b++) {
+			if(b==a) {
+				continue;
+			}
+			DutyTimeline dutyB = duties.get(b);
+			for(int i = 0; i<dutyA.size(); i++) {
+				if(!dutyA.canRemove(i)) {
+					continue;
+				}
+				int removal = removalDelta(dutyA, i);
+				Trip t = dutyA.getTrips().get(i);
+				for(int j = 0; j<=dutyB.size(); j++) {
+					if(dutyB.canInsert(j, t)) {
+						best = better(best, new Move(RELOCATE, a, b, i, j, removal+insertionDelta(dutyB, j, t)));
+					}
+				}
+			}
+			if(b>a) {
+				best = better(best, bestTwoOpt(a, b));
+				best = better(best, bestCross(a, b));
+			}
+		}
+		return best;
+	}
+
+	private Move bestTwoOpt(int a, int b) {
+		DutyTimeline dutyA = duties.get(a);
+		DutyTimeline dutyB = duties.get(b);
+		Move best = null;
+		for(int i = -1; i<dutyA.size(); i++) {
+			for(int j = 0; j<=dutyB.size(); j++) {
+				if(i==dutyA.size()-1&&j==dutyB.size()) {
+					continue; //nothing changes
+				}
+				if(dutyA.canConnect(i, dutyB, j)&&dutyB.canConnect(j-1, dutyA, i+1)) {
+					best = better(best, new Move(TWO_OPT, a, b, i, j, twoOptDelta(dutyA, i, dutyB, j)));
+				}
+			}
+		}
+		return best;
+	}
+
+	private Move bestCross(int a, int b) {
+		DutyTimeline dutyA = duties.get(a);
+		DutyTimeline dutyB = duties.get(b);
+		Move best = null;
+		for(int la = 1; la<=MAX_SEGMENT; la++) {
+			for(int lb = 1; lb<=MAX_SEGMENT; lb++) {
+				for(int i = 0; i+la<=dutyA.size(); i++) {
+					List<Trip> segA = dutyA.getTrips().subList(i, i+la);
+					for(int j = 0; j+lb<=dutyB.size(); j++) {
+						List<Trip> segB = dutyB.getTrips().subList(j, j+lb);
+						if(dutyA.canReplaceSegment(i, i+la, segB)&&dutyB.canReplaceSegment(j, j+lb, segA)) {
+							int delta = boundaryCosts(dutyA, i, i+la, segB)-boundaryCosts(dutyA, i, i+la, segA)
+									+boundaryCosts(dutyB, j, j+lb, segA)-boundaryCosts(dutyB, j, j+lb, segB);
+							Move m = new Move(CROSS, a, b, i, j, delta);
+							m.la = la;
+							m.lb = lb;
+							best = better(best, m);
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Method that tries to serve all trips of one duty by the other duties, starting with the smallest duty
+	 */
+	private boolean eliminateVehicle() {
+		List<Integer> order = new ArrayList<>();
+		for(int a = 0; a<duties.size(); a++) {
+			order.add(a);
+		}
+		order.sort((a1,a2) -> duties.get(a1).size()!=duties.get(a2).size() ? duties.get(a1).size()-duties.get(a2).size() : a1-a2);
+		for(int a: order) {
+			DutyTimeline eliminated = duties.get(a);
+			Map<Integer,DutyTimeline> changed = new HashMap<>();
+			int delta = -costs(eliminated.getDepot(), eliminated.getTrips());
+			boolean success = true;
+			for(Trip t: eliminated.getTrips()) {
+				int bestDelta = Integer.MAX_VALUE;
+				int bestB = -1;
+				int bestPos = -1;
+				for(int b = 0; b<duties.size(); b++) {
+					if(b==a) {
+						continue;
+					}
+					DutyTimeline dutyB = changed.containsKey(b) ? changed.get(b) : duties.get(b);
+					for(int j = 0; j<=dutyB.size(); j++) {
+						if(dutyB.canInsert(j, t)) {
+							int insertion = insertionDelta(dutyB, j, t);
+							if(insertion<bestDelta) {
+								bestDelta = insertion;
+								bestB = b;
+								bestPos = j;
+							}
+						}
+					}
+				}
+				if(bestB<0) {
+					success = false;
+					break;
+				}
+				if(!changed.containsKey(bestB)) {
+					DutyTimeline original = duties.get(bestB);
+					changed.put(bestB, new DutyTimeline(original.getDepot(), original.getTrips(), maxDev));
+				}
+				changed.get(bestB).insert(bestPos, t);
+				delta += bestDelta;
+			}
+			if(success&&delta<0) {
+				for(int b: changed.keySet()) {
+					duties.set(b, changed.get(b));
+				}
+				duties.remove(a);
+				numEliminated++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void apply(Move m) {
+		DutyTimeline dutyA = duties.get(m.a);
+		if(m.type==DEPOT_SWAP) {
+			duties.set(m.a, new DutyTimeline(m.depot, dutyA.getTrips(), maxDev));
+			return;
+		}
+		DutyTimeline dutyB = duties.get(m.b);
+		if(m.type==RELOCATE) {
+			Trip t = dutyA.remove(m.i);
+			dutyB.insert(m.j, t);
+		} else if(m.type==TWO_OPT) {
+			List<Trip> newA = concat(dutyA.getTrips(), m.i+1, dutyB.getTrips(), m.j);
+			List<Trip> newB = concat(dutyB.getTrips(), m.j, dutyA.getTrips(), m.i+1);
+			duties.set(m.a, new DutyTimeline(dutyA.getDepot(), newA, maxDev));
+			duties.set(m.b, new DutyTimeline(dutyB.getDepot(), newB, maxDev));
+		} else {
+			List<Trip> newA = new ArrayList<>(dutyA.getTrips().subList(0, m.i));
+			newA.addAll(dutyB.getTrips().subList(m.j, m.j+m.lb));
+			newA.addAll(dutyA.getTrips().subList(m.i+m.la, dutyA.size()));
+			List<Trip> newB = new ArrayList<>(dutyB.getTrips().subList(0, m.j));
+			newB.addAll(dutyA.getTrips().subList(m.i, m.i+m.la));
+			newB.addAll(dutyB.getTrips().subList(m.j+m.lb, dutyB.size()));
+			duties.set(m.a, new DutyTimeline(dutyA.getDepot(), newA, maxDev));
+			duties.set(m.b, new DutyTimeline(dutyB.getDepot(), newB, maxDev));
+		}
+	}
+
+	private List<Trip> concat(List<Trip> head, int headEnd, List<Trip> tail, int tailStart) {
+		List<Trip> trips = new ArrayList<>(head.subList(0, headEnd));
+		trips.addAll(tail.subList(tailStart, tail.size()));
+		return trips;
+	}
+
+	private int costs(Location depot, List<Trip> trips) {
+		if(trips.isEmpty()) {
+			return 0;
+		}
+		int driving = time(depot, trips.get(0).getStartLocation());
+		for(int i = 0; i+1<trips.size(); i++) {
+			driving += time(trips.get(i).getEndLocation(), trips.get(i+1).getStartLocation());
+		}
+		driving += time(trips.get(trips.size()-1).getEndLocation(), depot);
+		return 2*Instance.FIXED_COST+Instance.VARIABLE_COST*driving;
+	}
+
+	/**
+	 * Method that returns the change in costs when duty A continues after trip i with the trips of B from position j, and
+	 * duty B continues after trip j-1 with the trips of A from position i+1
+	 */
+	private int twoOptDelta(DutyTimeline dutyA, int i, DutyTimeline dutyB, int j) {
+		Location depotA = dutyA.getDepot();
+		Location depotB = dutyB.getDepot();
+		boolean tailA = i+1<dutyA.size();
+		boolean tailB = j<dutyB.size();
+		Location endA = endBefore(dutyA, i+1);
+		Location endB = endBefore(dutyB, j);
+		int driving = time(endA, tailB ? dutyB.getTrips().get(j).getStartLocation() : depotA)
+				+time(endB, tailA ? dutyA.getTrips().get(i+1).getStartLocation() : depotB)
+				-time(endA, startAt(dutyA, i+1))-time(endB, startAt(dutyB, j));
+		if(tailB) {
+			Location lastB = dutyB.getTrips().get(dutyB.size()-1).getEndLocation();
+			driving += time(lastB, depotA)-time(lastB, depotB);
+		}
+		if(tailA) {
+			Location lastA = dutyA.getTrips().get(dutyA.size()-1).getEndLocation();
+			driving += time(lastA, depotB)-time(lastA, depotA);
+		}
+		int delta = Instance.VARIABLE_COST*driving;
+		if(i<0&&!tailB) {
+			delta -= 2*Instance.FIXED_COST; //duty A becomes empty
+		}
+		if(j==0&&!tailA) {
+			delta -= 2*Instance.FIXED_COST; //duty B becomes empty
+		}
+		return delta;
+	}
+
+	private int removalDelta(DutyTimeline timeline, int pos) {
+		Trip t = timeline.getTrips().get(pos);
+		Location before = endBefore(timeline, pos);
+		Location after = startAt(timeline, pos+1);
+		int delta = Instance.VARIABLE_COST*(time(before, after)-time(before, t.getStartLocation())-time(t.getEndLocation(), after));
+		if(timeline.size()==1) {
+			delta -= 2*Instance.FIXED_COST;
+		}
+		return delta;
+	}
+
+	private int insertionDelta(DutyTimeline timeline, int pos, Trip t) {
+		Location before = endBefore(timeline, pos);
+		Location after = startAt(timeline, pos);
+		return Instance.VARIABLE_COST*(time(before, t.getStartLocation())+time(t.getEndLocation(), after)-time(before, after));
+	}
+
+	/**
+	 * Method that returns the costs of the connections into and out of a segment that is placed between positions from and
+	 * to, the costs inside the segment are left out
+	 */
+	private int boundaryCosts(DutyTimeline timeline, int from, int to, List<Trip> segment) {
+		Location before = endBefore(timeline, from);
+		Location after = startAt(timeline, to);
+		return Instance.VARIABLE_COST*(time(before, segment.get(0).getStartLocation())
+				+time(segment.get(segment.size()-1).getEndLocation(), after));
+	}
+
+	private int depotSwapDelta(DutyTimeline timeline, Location depot) {
+		Location first = timeline.getTrips().get(0).getStartLocation();
+		Location last = timeline.getTrips().get(timeline.size()-1).getEndLocation();
+		Location current = timeline.getDepot();
+		return Instance.VARIABLE_COST*(time(depot, first)+time(last, depot)-time(current, first)-time(last, current));
+	}
+
+	private Location endBefore(DutyTimeline timeline, int pos) {
+		return (pos==0) ? timeline.getDepot() : timeline.getTrips().get(pos-1).getEndLocation();
+	}
+
+	private Location startAt(DutyTimeline timeline, int pos) {
+		return (pos==timeline.size()) ? timeline.getDepot() : timeline.getTrips().get(pos).getStartLocation();
+	}
+
+	private int time(Location from, Location to) {
+		return travel[from.getIndex()][to.getIndex()];
+	}
+
+	/**
+	 * Method that returns the better of two moves, ties are broken by the order of the indices for reproducibility
+	 */
+	private static Move better(Move m1, Move m2) {
+		if(m1==null) {
+			return m2;
+		} else if(m2==null) {
+			return m1;
+		}
+		if(m1.delta!=m2.delta) {
+			return (m1.delta<m2.delta) ? m1 : m2;
+		}
+		if(m1.type!=m2.type) {
+			return (m1.type<m2.type) ? m1 : m2;
+		}
+		if(m1.a!=m2.a) {
+			return (m1.a<m2.a) ? m1 : m2;
+		}
+		if(m1.b!=m2.b) {
+			return (m1.b<m2.b) ? m1 : m2;
+		}
+		if(m1.i!=m2.i) {
+			return (m1.i<m2.i) ? m1 : m2;
+		}
+		if(m1.j!=m2.j) {
+			return (m1.j<m2.j) ? m1 : m2;
+		}
+		if(m1.la!=m2.la) {
+			return (m1.la<m2.la) ? m1 : m2;
+		}
+		return (m1.lb<=m2.lb) ? m1 : m2;
+	}
+
+	public int[] getNumMoves() {
+		return numMoves;
+	}
+
+	public int getNumEliminated() {
+		return numEliminated;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+
+	private static class Move {
+		private final int type;
+		private final int a;
+		private final int b;
+		private final int i;
+		private final int j;
+		private final int delta;
+		private int la;
+		private int lb;
+		private Location depot;
+
+		private Move(int type, int a, int b, int i, int j, int delta) {
+			this.type = type;
+			this.a = a;
+			this.b = b;
+			this.i = i;
+			this.j = j;
+			this.delta = delta;
+		}
+	}
+}
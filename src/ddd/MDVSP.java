@@ -10,8 +10,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
 import problem.Instance;
 import problem.Location;
@@ -36,6 +38,10 @@ public class MDVSP
 	Map<Location,Map<TimedArc,Integer>> flows;
 	private boolean hasCycle;
 	
+	//for branch-and-cut: candidates rejected by the continuous-time feasibility check
+	private List<List<TimedNode>> lazyTimePoints;
+	private int numRejected;
+	
 	private static int SEED;
 	private static int printDetail = 2; 
 
@@ -87,6 +93,17 @@ public class MDVSP
 		cplex.setParam(IloCplex.DoubleParam.TimeLimit, timeLimit);
 	}
 	
+	public void setThreads(int threads) throws IloException {
+		cplex.setParam(IloCplex.Param.Threads, threads);
+	}
+	
+	/**
+	 * Method that lets another thread stop the solve through the aborter
+	 */
+	public void useAborter(IloCplex.Aborter aborter) throws IloException {
+		cplex.use(aborter);
+	}
+	
 	public int getNumVariables() throws IloException
 	{
 		int numVars = 0;
@@ -505,11 +522,84 @@ public class MDVSP
 	public Map<Location, List<Duty>> retrievePathDecomposition() throws IloException
 	{
 		storeFlows();
+		Map<Location, List<Duty>> schedules = decomposeFlows(flows);
+		hasCycle = false;
+		for(Location depot: schedules.keySet()) {
+			for(Duty d: schedules.get(depot)) {
+				hasCycle |= d.isCycle();
+			}
+		}
+		return schedules;
+	}
+	
+	/**
+	 * Method that returns the number of integer solutions in the solution pool
+	 */
+	public int getNumPoolSolutions() throws IloException {
+		return cplex.getSolnPoolNsolns();
+	}
+	
+	/**
+	 * Method that returns the objective of a solution in the pool
+	 */
+	public double getPoolObjectiveValue(int soln) throws IloException {
+		return cplex.getObjValue(soln);
+	}
+	
+	/**
+	 * Method that checks whether a solution in the pool is the incumbent: the same objective and the same arc flows
+	 */
+	public boolean isIncumbent(int soln) throws IloException {
+		if(Math.abs(cplex.getObjValue(soln)-cplex.getObjValue())>1e-6) {
+			return false;
+		}
+		for(Location depot: in.getDepots()) {
+			IloNumVar[] vars = X.get(depot).values().toArray(new IloNumVar[0]);
+			double[] poolValues = cplex.getValues(vars, soln);
+			double[] values = cplex.getValues(vars);
+			for(int i = 0; i<values.length; i++) {
+				if(Math.abs(poolValues[i]-values[i])>0.5) {
+					return false;
+				}
+			}
+			if (oneDepot) break;
+		}
+		return true;
+	}
+	
+	/**
+	 * Method that decomposes a solution from the solution pool into duties. The flows of the incumbent are not changed.
+	 */
+	public Map<Location, List<Duty>> retrievePathDecomposition(int soln) throws IloException
+	{
+		Map<Location,Map<TimedArc,Integer>> poolFlows = new LinkedHashMap<>();
+		for(Location depot: in.getDepots()) {
+			IloNumVar[] vars = X.get(depot).values().toArray(new IloNumVar[0]);
+			TimedArc[] arcs = X.get(depot).keySet().toArray(new TimedArc[0]);
+			double[] values = cplex.getValues(vars, soln);
+			Map<TimedArc,Integer> support = new LinkedHashMap<>();
+			for(int i = 0; i<values.length; i++) {
+				if(values[i]>0.5) {
+					support.put(arcs[i], (int) Math.round(values[i]));
+				}
+			}
+			poolFlows.put(depot, support);
+			if (oneDepot) break;
+		}
+		return decomposeFlows(poolFlows);
+	}
+	
+	/**
+	 * Method that decomposes the given arc flows into duties per depot. Flow that remains in cycles becomes a cycle duty.
+	 * The method does not change the model, so it can be used on candidate solutions from other threads.
+	 */
+	public Map<Location, List<Duty>> decomposeFlows(Map<Location,Map<TimedArc,Integer>> arcFlows)
+	{
 		boolean print = (printDetail>2);
 		Map<Location, List<Duty>> schedules = new HashMap<>();
 		for (Location depot : in.getDepots())
 		{
-			Map<TimedArc, Integer> solution = new HashMap<>(flows.get(depot));
+			Map<TimedArc, Integer> solution = new HashMap<>(arcFlows.get(depot));
 			int numVehicles = 0;
 			int totalFlow = 0;
 
@@ -568,7 +658,6 @@ public class MDVSP
 			if (totalFlow > 0)
 			{
 				//print = true;
-				hasCycle = true;
 				if (print) System.out.println("");
 				if (print) System.out.println("Cycles left!");
 				if (print) System.out.println("");
@@ -596,10 +685,197 @@ public class MDVSP
 		return (int) Math.ceil(cplex.getBestObjValue()-0.0001);
 	}
 
+	public Map<Location,Map<TimedArc,Integer>> getFlows() {
+		return flows;
+	}
+
 	public boolean solutionHasCycle() {
 		return hasCycle;
 	}
 
+	/**
+	 * Method that turns the model into a branch-and-cut for the MDVSP-TS. Every integer candidate is decomposed into duties
+	 * and checked for feasibility in continuous time. A candidate is rejected if an infeasible duty is forced by its flows,
+	 * i.e., the chain of arcs from its first trip to its first violated trip gets no other flow into its nodes. The cut on
+	 * this chain is valid for every solution that is feasible in continuous time, so the bound of the model stays valid.
+	 * The time points that repair the infeasible duties are stored, and the solve is aborted after batchSize rejected
+	 * candidates, after which the solver refines the network and builds a new model.
+	 */
+	public void useFeasibilityCallback(int batchSize) throws IloException {
+		lazyTimePoints = new ArrayList<>();
+		numRejected = 0;
+		cplex.use(new FeasibilityCallback(batchSize));
+	}
+	
+	private class FeasibilityCallback extends IloCplex.LazyConstraintCallback {
+		private final int batchSize;
+		private final Map<Location,IloNumVar[]> vars;
+		private final Map<Location,TimedArc[]> arcs;
+		
+		private FeasibilityCallback(int batchSize) {
+			this.batchSize = batchSize;
+			vars = new HashMap<>();
+			arcs = new HashMap<>();
+			for(Location depot: X.keySet()) {
+				vars.put(depot, X.get(depot).values().toArray(new IloNumVar[0]));
+				arcs.put(depot, X.get(depot).keySet().toArray(new TimedArc[0]));
+			}
+		}
+
+		@Override
+		protected void main() throws IloException {
+			Map<Location,Map<TimedArc,Integer>> candidate = new LinkedHashMap<>();
+			for(Location depot: in.getDepots()) {
+				double[] values = getValues(vars.get(depot));
+				Map<TimedArc,Integer> support = new LinkedHashMap<>();
+				for(int i = 0; i<values.length; i++) {
+					if(values[i]>0.5) {
+						support.put(arcs.get(depot)[i], (int) Math.round(values[i]));
+					}
+				}
+				candidate.put(depot, support);
+				if (oneDepot) break;
+			}
+			
+			Map<Location,List<Duty>> schedules = decomposeFlows(candidate);
+			
+			List<List<TimedNode>> newTimePoints = new ArrayList<>();
+			List<IloRange> cuts = new ArrayList<>();
+			for(Location depot: schedules.keySet()) {
+				for(Duty d: schedules.get(depot)) {
+					List<TimedNode> points = d.feasibilityCheck(in.getMaxDeviation(), false);
+					if(!points.isEmpty()) {
+						newTimePoints.add(points);
+						IloRange cut = infeasibleChainCut(depot, d, candidate.get(depot));
+						if(cut!=null) {
+							cuts.add(cut);
+						}
+					}
+				}
+			}
+			//infeasible duties that are not forced are left to the refinement after the solve
+			int rejected = storeRejected(newTimePoints, !cuts.isEmpty());
+			if(!cuts.isEmpty()) {
+				for(IloRange cut: cuts) {
+					add(cut);
+				}
+				if(printDetail>1) {
+					System.out.println("Rejected candidate "+rejected+" with objective "+getObjValue());
+				}
+				if(rejected>=batchSize) {
+					abort();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Method that stores the time points found by the callback, which can be called from several threads at once.
+	 * Returns the number of rejected candidates so far.
+	 */
+	private synchronized int storeRejected(List<List<TimedNode>> newTimePoints, boolean rejected) {
+		lazyTimePoints.addAll(newTimePoints);
+		if(rejected) {
+			numRejected++;
+		}
+		return numRejected;
+	}
+	
+	/**
+	 * Method that passes every new incumbent to the refinement pipeline, which checks it in another thread
+	 */
+	public void useIncumbentCallback(RefinementPipeline pipeline) throws IloException {
+		cplex.use(new PipelineCallback(pipeline));
+	}
+	
+	private class PipelineCallback extends IloCplex.IncumbentCallback {
+		private final RefinementPipeline pipeline;
+		private final Map<Location,IloNumVar[]> vars;
+		private final Map<Location,TimedArc[]> arcs;
+		
+		private PipelineCallback(RefinementPipeline pipeline) {
+			this.pipeline = pipeline;
+			vars = new HashMap<>();
+			arcs = new HashMap<>();
+			for(Location depot: X.keySet()) {
+				vars.put(depot, X.get(depot).values().toArray(new IloNumVar[0]));
+				arcs.put(depot, X.get(depot).keySet().toArray(new TimedArc[0]));
+			}
+		}
+
+		@Override
+		protected void main() throws IloException {
+			Map<Location,Map<TimedArc,Integer>> incumbent = new LinkedHashMap<>();
+			for(Location depot: in.getDepots()) {
+				double[] values = getValues(vars.get(depot));
+				Map<TimedArc,Integer> support = new LinkedHashMap<>();
+				for(int i = 0; i<values.length; i++) {
+					if(values[i]>0.5) {
+						support.put(arcs.get(depot)[i], (int) Math.round(values[i]));
+					}
+				}
+				incumbent.put(depot, support);
+				if (oneDepot) break;
+			}
+			pipeline.submit(incumbent);
+		}
+	}
+	
+	/**
+	 * Method that returns a cut on the chain of an infeasible duty, or null if the candidate does not force the chain. For a
+	 * path, the chain runs from the first trip to the first violated trip, for a cycle it is the whole cycle. Every unit of
+	 * other flow into a node of the chain relaxes the cut by bigM, as another vehicle could then take over the rest of the
+	 * chain. Hence, the cut only forbids flows in which the infeasible chain is driven by a single vehicle.
+	 */
+	private IloRange infeasibleChainCut(Location depot, Duty d, Map<TimedArc,Integer> support) throws IloException {
+		Location layer = oneDepot ? in.getDepots().get(0) : depot;
+		Map<TimedArc,IloNumVar> depotVars = X.get(layer);
+		List<TimedArc> chain = new ArrayList<>();
+		for(TimedArc a: d.getArcs()) {
+			if(!d.isCycle()) {
+				if(!d.getActualDeparture().containsKey(a)) {
+					break; //beyond the first violated trip
+				}
+				if(chain.isEmpty()&&a.getType()!=TimedArc.TRIP_ARC) {
+					continue; //the pull-out does not matter for the feasibility
+				}
+			}
+			chain.add(a);
+		}
+		
+		//a path starts with a trip arc, which has flow at most 1, in a cycle an arc has at most one vehicle per trip
+		int maxFlow = d.isCycle() ? in.getNumTrips() : 1;
+		int bigM = chain.size()*maxFlow+1;
+		IloLinearNumExpr lhs = cplex.linearNumExpr();
+		int candidateLhs = 0;
+		for(int i = 0; i<chain.size(); i++) {
+			TimedArc a = chain.get(i);
+			lhs.addTerm(1, depotVars.get(a));
+			candidateLhs += support.getOrDefault(a, 0);
+			if(!d.isCycle()&&i==chain.size()-1) {
+				break; //the end of the path is not part of the chain
+			}
+			for(TimedArc other: graph.get(layer).getInArcs(a.getTo())) {
+				if(!other.equals(a)) {
+					lhs.addTerm(-bigM, depotVars.get(other));
+					candidateLhs -= bigM*support.getOrDefault(other, 0);
+				}
+			}
+		}
+		if(candidateLhs<chain.size()) {
+			return null;
+		}
+		return cplex.le(lhs, chain.size()-1);
+	}
+	
+	public synchronized List<List<TimedNode>> getLazyTimePoints() {
+		return lazyTimePoints;
+	}
+	
+	public synchronized int getNumRejected() {
+		return numRejected;
+	}
+
 	public boolean foundSolution() throws IloException {
 		return cplex.getStatus().equals(IloCplex.Status.Feasible)||cplex.getStatus().equals(IloCplex.Status.Optimal);
 	}
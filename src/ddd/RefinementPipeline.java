@@ -0,0 +1,189 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+
+/**
+ * Class that checks the incumbents of a running LB-IP in worker threads. Every new incumbent is pushed by the incumbent
+ * callback of the MDVSP, decomposed into duties and checked for feasibility in continuous time while CPLEX continues.
+ * For the latest incumbent, the worker also builds the refined network on a staged copy of the time-space network, such
+ * that the refinement is ready when the solve returns with this incumbent.
+ */
+public class RefinementPipeline {
+	private final Instance inst;
+	private final int numWorkers;
+	private final boolean intermediatePoints; //if true, the time points of earlier incumbents are added as well
+
+	private MDVSP model;
+	private TimeSpaceGraph network; //snapshot of the time points of the network of the LB-IP
+	private ExecutorService workers;
+	private final Set<TimedNode> timePoints; //time points of all checked incumbents
+	private final List<Map<Location,List<Duty>>> feasibleCandidates;
+	private int numSubmitted;
+	private int numChecked;
+
+	//the result for the latest incumbent
+	private int latestIndex = -1;
+	private Map<Location,Map<TimedArc,Integer>> latestFlows;
+	private Set<Duty> latestFeasible;
+	private Set<Duty> latestInfeasible;
+	private TimeSpaceGraph refinedNetwork;
+	private Set<TimedNode> refinedPoints; //time points with which the refined network was built
+
+	private static int printDetail = 1;
+
+	public RefinementPipeline(Instance inst, int numWorkers, boolean intermediatePoints) {
+		this.inst = inst;
+		this.numWorkers = numWorkers;
+		this.intermediatePoints = intermediatePoints;
+		timePoints = new LinkedHashSet<>();
+		feasibleCandidates = new ArrayList<>();
+	}
+
+	/**
+	 * Method that starts the workers and attaches the pipeline to the model, should be called before the model is solved.
+	 * The network is the network of the first depot, from which the networks of the other depots are copied.
+	 */
+	public void start(MDVSP model, TimeSpaceGraph network) throws IloException {
+		this.model = model;
+		this.network = new TimeSpaceGraph(network);
+		workers = Executors.newFixedThreadPool(numWorkers);
+		model.useIncumbentCallback(this);
+	}
+
+	/**
+	 * Method that is called by the incumbent callback with the arc flows of the new incumbent
+	 */
+	public synchronized void submit(Map<Location,Map<TimedArc,Integer>> incumbentFlows) {
+		int index = numSubmitted++;
+		workers.submit(() -> check(index, incumbentFlows));
+	}
+
+	private void check(int index, Map<Location,Map<TimedArc,Integer>> incumbentFlows) {
+		Map<Location,List<Duty>> schedules = model.decomposeFlows(incumbentFlows);
+		List<TimedNode> suggested = new ArrayList<>();
+		Set<Duty> feasible = new HashSet<>();
+		Set<Duty> infeasible = new LinkedHashSet<>();
+		for(Location depot: schedules.keySet()) {
+			for(Duty d: schedules.get(depot)) {
+				List<TimedNode> newTimePoints = d.feasibilityCheck(inst.getMaxDeviation(), false);
+				if(newTimePoints.isEmpty()) {
+					feasible.add(d);
+				} else {
+					suggested.addAll(newTimePoints);
+					infeasible.add(d);
+				}
+			}
+		}
+
+		Set<TimedNode> points;
+		synchronized(this) {
+			numChecked++;
+			if(suggested.isEmpty()) {
+				feasibleCandidates.add(schedules);
+			}
+			timePoints.addAll(suggested);
+			if(index<latestIndex) {
+				return; //a newer incumbent is already checked
+			}
+			latestIndex = index;
+			latestFlows = incumbentFlows;
+			latestFeasible = feasible;
+			latestInfeasible = infeasible;
+			refinedNetwork = null;
+			refinedPoints = null;
+			points = new LinkedHashSet<>(intermediatePoints ? timePoints : suggested);
+		}
+		if(points.isEmpty()) {
+			return; //nothing to refine
+		}
+
+		TimeSpaceGraph refined = buildNetwork(points);
+		synchronized(this) {
+			if(index==latestIndex) {
+				refinedNetwork = refined;
+				refinedPoints = points;
+			}
+		}
+	}
+
+	/**
+	 * Method that adds the time points to a staged copy of the network and constructs its arcs
+	 */
+	private TimeSpaceGraph buildNetwork(Set<TimedNode> points) {
+		TimeSpaceGraph refined = new TimeSpaceGraph(network);
+		for(TimedNode n: points) {
+			refined.addNode(n.getStation(), n.getTime());
+		}
+		refined.constructArcs();
+		return refined;
+	}
+
+	/**
+	 * Method that waits until all submitted incumbents are checked, should be called after the model is solved
+	 */
+	public void finish() {
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			throw new Error("Interrupted while waiting for the refinement workers", e);
+		}
+		if(intermediatePoints&&latestFlows!=null&&!timePoints.isEmpty()&&(refinedPoints==null||!refinedPoints.containsAll(timePoints))) {
+			//an older incumbent was checked after the network was built
+			refinedPoints = new LinkedHashSet<>(timePoints);
+			refinedNetwork = buildNetwork(refinedPoints);
+		}
+		if(printDetail>0) {
+			System.out.println("Pipeline checked "+numChecked+" incumbents and suggests "+timePoints.size()+" time points");
+		}
+	}
+
+	/**
+	 * Method that returns true if the given flows are those of the latest checked incumbent, such that its result can be
+	 * used instead of checking the solution again
+	 */
+	public synchronized boolean isLatestIncumbent(Map<Location,Map<TimedArc,Integer>> flows) {
+		return latestFlows!=null&&latestFlows.equals(flows);
+	}
+
+	/**
+	 * Method that returns the time points of all checked incumbents if intermediate points are used, and none otherwise
+	 */
+	public synchronized List<TimedNode> getIntermediateTimePoints() {
+		if(!intermediatePoints) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(timePoints);
+	}
+
+	public synchronized List<Map<Location, List<Duty>>> getFeasibleCandidates() {
+		return new ArrayList<>(feasibleCandidates);
+	}
+
+	public synchronized Set<Duty> getLatestFeasible() {
+		return latestFeasible;
+	}
+
+	public synchronized Set<Duty> getLatestInfeasible() {
+		return latestInfeasible;
+	}
+
+	public synchronized TimeSpaceGraph getRefinedNetwork() {
+		return refinedNetwork;
+	}
+
+	public synchronized int getNumChecked() {
+		return numChecked;
+	}
+}
@@ -0,0 +1,146 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.TimetableChange;
+import problem.Trip;
+
+/**
+ * Class that re-optimises a solved instance after changes to the timetable. Instead of starting DDD from scratch, the
+ * time points of the previous network that are still at stations of the changed instance are carried over, and the
+ * previous solution is repaired (cancelled trips are removed, retimed and added trips are reinserted) and used as the
+ * first incumbent and MIP start. The state is updated after every change, such that changes can be chained.
+ */
+public class Reoptimizer {
+	private final int timeLimit;
+	private final boolean aggregate;
+
+	private Instance inst;
+	private Solution incumbent;
+	private List<TimedNode> timePoints;
+
+	private int repairedCosts;
+	private int numTimePointsCarried;
+	private double cpuRepair;
+	private double cpu;
+
+	private static int printDetail = 1;
+
+	public Reoptimizer(Instance inst, Solver_DDD solved, int timeLimit, boolean aggregate) {
+		this.inst = inst;
+		this.incumbent = solved.getSolution();
+		this.timePoints = solved.getTimePoints();
+		this.timeLimit = timeLimit;
+		this.aggregate = aggregate;
+	}
+
+	/**
+	 * Method that applies the changes and re-optimises with DDD from the warm state, returns the new solution
+	 */
+	public Solution reoptimize(TimetableChange change) throws IloException {
+		long clock = System.nanoTime();
+		repairedCosts = 0;
+		Instance changed = change.apply(inst);
+		Solution repaired = repairIncumbent(change, changed);
+		cpuRepair = 1e-9*(System.nanoTime()-clock);
+
+		List<TimedNode> carried = validTimePoints(changed);
+		numTimePointsCarried = carried.size();
+		Solver_DDD solver = new Solver_DDD(changed, true, 3, 3, false, timeLimit, aggregate, Integer.MAX_VALUE);
+		solver.setInitialTimePoints(carried);
+		if(repaired!=null) {
+			repairedCosts = repaired.getCosts();
+			solver.setInitialSolution(repaired);
+		}
+		solver.solve();
+
+		inst = changed;
+		incumbent = (solver.getSolution()!=null) ? solver.getSolution() : repaired;
+		timePoints = solver.getTimePoints();
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("Re-optimised after "+change.getAdded().size()+" added, "+change.getCancelled().size()
+					+" cancelled and "+change.getRetimed().size()+" retimed trips in "+cpu+"s. Repaired costs: "
+					+repairedCosts+", new costs: "+((incumbent==null) ? "-" : incumbent.getCosts()));
+		}
+		return incumbent;
+	}
+
+	/**
+	 * Method that maps the duties of the incumbent to the changed instance and repairs them, or returns null if some trip
+	 * cannot be served
+	 */
+	private Solution repairIncumbent(TimetableChange change, Instance changed) {
+		if(incumbent==null) {
+			return null;
+		}
+		Set<Duty> feasible = new LinkedHashSet<>();
+		Set<Duty> infeasible = new LinkedHashSet<>();
+		for(Duty d: incumbent.getDuties()) {
+			List<Trip> trips = new ArrayList<>();
+			for(Trip t: d.getTrips()) {
+				Trip updated = change.getUpdated(t);
+				if(updated!=null) {
+					trips.add(updated);
+				}
+			}
+			if(trips.isEmpty()) {
+				continue;
+			}
+			Duty mapped = Duty.fromTrips(d.getDepot(), trips, changed);
+			if(new DutyTimeline(d.getDepot(), trips, changed.getMaxDeviation()).isFeasible()) {
+				feasible.add(mapped);
+			} else {
+				infeasible.add(mapped);
+			}
+		}
+		return new RepairHeuristic(changed).repair(feasible, infeasible, change.getAdded());
+	}
+
+	/**
+	 * Method that returns the time points that are at stations of the changed instance, within its horizon
+	 */
+	private List<TimedNode> validTimePoints(Instance changed) {
+		List<TimedNode> valid = new ArrayList<>();
+		for(TimedNode n: timePoints) {
+			Location station = n.getStation();
+			if(!changed.isStartStation(station)&&!changed.isEndStation(station)) {
+				continue;
+			}
+			if(n.getTime()>=changed.getStartHorizon()&&n.getTime()<changed.getEndHorizon()) {
+				valid.add(n);
+			}
+		}
+		return valid;
+	}
+
+	public Instance getInstance() {
+		return inst;
+	}
+
+	public Solution getIncumbent() {
+		return incumbent;
+	}
+
+	public int getRepairedCosts() {
+		return repairedCosts;
+	}
+
+	public int getNumTimePointsCarried() {
+		return numTimePointsCarried;
+	}
+
+	public double getCpuRepair() {
+		return cpuRepair;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+}
@@ -0,0 +1,168 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.Trip;
+
+/**
+ * Class that repairs a solution with duties that are infeasible in continuous time. Every infeasible duty is split at
+ * the first trip that cannot be reached in time: the part before the violation is kept, and the remaining trips are
+ * orphaned. The orphans are inserted in order of start time at the cheapest feasible position in any duty, and a new
+ * vehicle is started at the cheapest depot only if no such position exists.
+ */
+public class RepairHeuristic {
+	private final Instance inst;
+	private final int maxDev;
+
+	private int numOrphans;
+	private int numNewVehicles;
+	private double cpu;
+
+	private static int printDetail = 1;
+
+	public RepairHeuristic(Instance inst) {
+		this.inst = inst;
+		this.maxDev = inst.getMaxDeviation();
+	}
+
+	/**
+	 * Method that returns a feasible solution that serves all trips of the given duties, or null if some trip cannot be
+	 * served by any vehicle
+	 */
+	public Solution repair(Set<Duty> feasible, Set<Duty> infeasible) {
+		return repair(feasible, infeasible, new ArrayList<>());
+	}
+
+	/**
+	 * Method that repairs the duties as above, and also inserts the given trips that are not in any duty yet
+	 */
+	public Solution repair(Set<Duty> feasible, Set<Duty> infeasible, List<Trip> unassigned) {
+		long clock = System.nanoTime();
+		List<DutyTimeline> duties = new ArrayList<>();
+		for(Duty d: feasible) {
+			duties.add(new DutyTimeline(d.getDepot(), d.getTrips(), maxDev));
+		}
+		List<Trip> orphans = new ArrayList<>(unassigned);
+		for(Duty d: infeasible) {
+			if(d.isCycle()) {
+				orphans.addAll(d.getTrips());
+				continue;
+			}
+			List<Trip> trips = d.getTrips();
+			int violation = new DutyTimeline(d.getDepot(), trips, maxDev).getFirstViolation();
+			if(violation>0) {
+				duties.add(new DutyTimeline(d.getDepot(), trips.subList(0, violation), maxDev));
+			}
+			orphans.addAll(trips.subList(violation, trips.size()));
+		}
+		numOrphans = orphans.size();
+		numNewVehicles = 0;
+
+		Collections.sort(orphans);
+		for(Trip t: orphans) {
+			if(!insertCheapest(duties, t)) {
+				DutyTimeline newDuty = startVehicle(t);
+				if(newDuty==null) {
+					System.out.println("No depot can serve "+t);
+					return null;
+				}
+				duties.add(newDuty);
+				numNewVehicles++;
+			}
+		}
+
+		Set<Duty> repaired = new LinkedHashSet<>();
+		for(DutyTimeline timeline: duties) {
+			repaired.add(Duty.fromTrips(timeline.getDepot(), timeline.getTrips(), inst));
+		}
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("Repaired solution by reinserting "+numOrphans+" trips and starting "+numNewVehicles
+					+" new vehicles in "+cpu+"s.");
+		}
+		return new Solution(inst, repaired);
+	}
+
+	/**
+	 * Method that inserts the trip at the cheapest feasible position, returns false if there is no such position
+	 */
+	private boolean insertCheapest(List<DutyTimeline> duties, Trip t) {
+		DutyTimeline bestDuty = null;
+		int bestPos = -1;
+		int bestDelta = Integer.MAX_VALUE;
+		for(DutyTimeline timeline: duties) {
+			for(int pos = 0; pos<=timeline.size(); pos++) {
+				int delta = insertionCosts(timeline, pos, t);
+				if(delta<bestDelta&&timeline.canInsert(pos, t)) {
+					bestDelta = delta;
+					bestDuty = timeline;
+					bestPos = pos;
+				}
+			}
+		}
+		if(bestDuty==null) {
+			return false;
+		}
+		bestDuty.insert(bestPos, t);
+		return true;
+	}
+
+	/**
+	 * Method that starts a new vehicle for the trip at the cheapest depot that can serve it
+	 */
+	private DutyTimeline startVehicle(Trip t) {
+		Location bestDepot = null;
+		int bestCosts = Integer.MAX_VALUE;
+		for(Location depot: inst.getDepots()) {
+			int pullout = depot.getTimeTo(t.getStartLocation());
+			int pullin = depot.getTimeFrom(t.getEndLocation());
+			if(pullout>=DutyTimeline.MISSING_TRAVEL_THRESHOLD||pullin>=DutyTimeline.MISSING_TRAVEL_THRESHOLD||pullout>t.getStartTime()+maxDev) {
+				continue;
+			}
+			if(pullout+pullin<bestCosts) {
+				bestCosts = pullout+pullin;
+				bestDepot = depot;
+			}
+		}
+		if(bestDepot==null) {
+			return null;
+		}
+		List<Trip> trips = new ArrayList<>();
+		trips.add(t);
+		return new DutyTimeline(bestDepot, trips, maxDev);
+	}
+
+	/**
+	 * Method that returns the additional deadhead costs of inserting the trip at the position, or Integer.MAX_VALUE if the
+	 * required connections do not exist
+	 */
+	private int insertionCosts(DutyTimeline timeline, int pos, Trip t) {
+		List<Trip> trips = timeline.getTrips();
+		Location before = (pos==0) ? timeline.getDepot() : trips.get(pos-1).getEndLocation();
+		Location after = (pos==trips.size()) ? timeline.getDepot() : trips.get(pos).getStartLocation();
+		int in = before.getTimeTo(t.getStartLocation());
+		int out = t.getEndLocation().getTimeTo(after);
+		if(in>=DutyTimeline.MISSING_TRAVEL_THRESHOLD||out>=DutyTimeline.MISSING_TRAVEL_THRESHOLD) {
+			return Integer.MAX_VALUE;
+		}
+		return Instance.VARIABLE_COST*(in+out-before.getTimeTo(after));
+	}
+
+	public int getNumOrphans() {
+		return numOrphans;
+	}
+
+	public int getNumNewVehicles() {
+		return numNewVehicles;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+}
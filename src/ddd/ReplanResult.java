@@ -0,0 +1,60 @@
+package ddd;
+
+import problem.Solution;
+
+/**
+ * Class for the result of re-planning after a delay: the new schedule, the phase that found it and the latencies
+ */
+public class ReplanResult {
+	public final static int LOCAL = 0; //the delay is absorbed by re-timing the duty
+	public final static int REPAIR = 1; //the delayed trip and its successors are reinserted greedily
+	public final static int RESOLVE = 2; //the affected duties and their neighbours are re-solved exactly
+	private final static String[] NAMES = {"local", "repair", "resolve"};
+
+	private final Solution solution;
+	private final int phase;
+	private final double latencyLocal;
+	private final double latencyRepair;
+	private final double latencyTotal;
+	private final double deadline;
+
+	public ReplanResult(Solution solution, int phase, double latencyLocal, double latencyRepair, double latencyTotal,
+			double deadline) {
+		this.solution = solution;
+		this.phase = phase;
+		this.latencyLocal = latencyLocal;
+		this.latencyRepair = latencyRepair;
+		this.latencyTotal = latencyTotal;
+		this.deadline = deadline;
+	}
+
+	public Solution getSolution() {
+		return solution;
+	}
+
+	public int getPhase() {
+		return phase;
+	}
+
+	public double getLatencyLocal() {
+		return latencyLocal;
+	}
+
+	public double getLatencyRepair() {
+		return latencyRepair;
+	}
+
+	public double getLatencyTotal() {
+		return latencyTotal;
+	}
+
+	public boolean metDeadline() {
+		return latencyTotal<=deadline;
+	}
+
+	@Override
+	public String toString() {
+		return "Replanned by "+NAMES[phase]+" in "+latencyTotal+"s (local: "+latencyLocal+"s, repair: "+latencyRepair
+				+"s, deadline: "+deadline+"s)";
+	}
+}
@@ -0,0 +1,191 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Solution;
+import problem.Trip;
+
+/**
+ * Class that solves an instance with DDD in a rolling horizon. The windows of trips overlap: after solving a window,
+ * the duty prefixes with trips that start before the next window are fixed, and the trips after them are solved again
+ * in the next window. A vehicle that is still in operation is carried forward as an anchor trip at its last location and
+ * ready time, which can only be the first trip of a duty of its own depot. The time points discovered in a window are
+ * used to initialize the network of the next window.
+ */
+public class RollingHorizonSolver {
+	private final Instance inst;
+	private final int windowLength; //length of a window in minutes
+	private final int step; //minutes between the starts of two windows
+	private final int windowTimeLimit;
+	private final boolean aggregate;
+
+	private boolean reuseTimePoints = true;
+
+	private Solution solution;
+	private int numWindows;
+	private int maxWindowTrips;
+	private double maxWindowCpu;
+	private double cpu;
+
+	private static int printDetail = 1;
+
+	public RollingHorizonSolver(Instance inst, int windowLength, int step, int windowTimeLimit, boolean aggregate) {
+		if(step<=0||step>windowLength) {
+			throw new Error("The step should be positive and at most the window length");
+		}
+		this.inst = inst;
+		this.windowLength = windowLength;
+		this.step = step;
+		this.windowTimeLimit = windowTimeLimit;
+		this.aggregate = aggregate;
+	}
+
+	public void solve() throws IloException {
+		long clock = System.nanoTime();
+		TreeSet<Trip> unfixed = new TreeSet<>(inst.getTrips());
+		Map<Trip, List<Trip>> openChains = new LinkedHashMap<>(); //anchor of an open vehicle -> trips fixed so far
+		Map<Trip, Location> anchorDepots = new HashMap<>();
+		Set<Duty> closed = new LinkedHashSet<>();
+		List<TimedNode> timePoints = null;
+		int nextAnchorID = Integer.MAX_VALUE/2;
+		numWindows = 0;
+		maxWindowTrips = 0;
+		maxWindowCpu = 0;
+
+		int windowStart = unfixed.isEmpty() ? 0 : unfixed.first().getStartTime();
+		while(!unfixed.isEmpty()) {
+			int windowEnd = windowStart+windowLength;
+			int commit = windowStart+step;
+			boolean last = unfixed.last().getStartTime()<windowEnd;
+
+			//the window contains the unfixed trips that start before its end, and the open vehicles
+			List<Trip> windowTrips = new ArrayList<>();
+			for(Trip t: unfixed) {
+				if(t.getStartTime()>=windowEnd) {
+					break;
+				}
+				windowTrips.add(t);
+			}
+			Instance windowInst = new Instance(inst, windowTrips);
+			Map<Trip, Trip> anchors = new HashMap<>(); //anchor in this window -> anchor of the chain
+			for(Trip chain: openChains.keySet()) {
+				List<Trip> fixed = openChains.get(chain);
+				Trip lastFixed = fixed.get(fixed.size()-1);
+				int ready = new DutyTimeline(anchorDepots.get(chain), fixed, inst.getMaxDeviation())
+						.getEarliestDeparture(fixed.size()-1)+lastFixed.getTripTime();
+				anchors.put(windowInst.addAnchor(anchorDepots.get(chain), lastFixed.getEndLocation(), ready,
+						nextAnchorID++), chain);
+			}
+			maxWindowTrips = Math.max(maxWindowTrips, windowInst.getNumTrips());
+
+			Solver_DDD solver = new Solver_DDD(windowInst, true, 3, 3, false, windowTimeLimit, aggregate, Integer.MAX_VALUE);
+			if(reuseTimePoints&&timePoints!=null) {
+				solver.setInitialTimePoints(usableTimePoints(timePoints, windowInst, windowStart));
+			}
+			long windowClock = System.nanoTime();
+			solver.solve();
+			maxWindowCpu = Math.max(maxWindowCpu, 1e-9*(System.nanoTime()-windowClock));
+			if(solver.getSolution()==null) {
+				throw new Error("No solution found for the window starting at "+windowStart);
+			}
+			timePoints = solver.getTimePoints();
+			numWindows++;
+
+			//fix the prefixes of the duties, and carry the vehicles with remaining trips forward
+			Map<Trip, List<Trip>> newChains = new LinkedHashMap<>();
+			for(Duty d: solver.getSolution().getDuties()) {
+				List<Trip> trips = d.getTrips();
+				List<Trip> fixed = new ArrayList<>();
+				Trip chain = null;
+				int pos = 0;
+				if(anchors.containsKey(trips.get(0))) {
+					chain = anchors.get(trips.get(0));
+					fixed.addAll(openChains.get(chain));
+					pos = 1;
+				}
+				while(pos<trips.size()&&(last||trips.get(pos).getStartTime()<commit)) {
+					fixed.add(trips.get(pos));
+					unfixed.remove(trips.get(pos));
+					pos++;
+				}
+				if(pos==trips.size()) {
+					closed.add(Duty.fromTrips(d.getDepot(), fixed, inst));
+				} else if(!fixed.isEmpty()) {
+					Trip newChain = (chain==null) ? fixed.get(0) : chain;
+					newChains.put(newChain, fixed);
+					anchorDepots.put(newChain, d.getDepot());
+				}
+			}
+			openChains = newChains;
+			if(printDetail>0) {
+				System.out.println("Window "+numWindows+" from "+windowStart+" with "+windowInst.getNumTrips()+" trips: "
+						+closed.size()+" duties closed, "+openChains.size()+" vehicles open, "+unfixed.size()+" trips left");
+			}
+			windowStart = commit;
+			if(!unfixed.isEmpty()) {
+				windowStart = Math.max(windowStart, unfixed.first().getStartTime());
+			}
+		}
+		for(Trip chain: openChains.keySet()) {
+			closed.add(Duty.fromTrips(anchorDepots.get(chain), openChains.get(chain), inst));
+		}
+
+		solution = new Solution(inst, closed);
+		if(!solution.isFeasible()) {
+			throw new Error("The rolling-horizon solution is not feasible");
+		}
+		cpu = 1e-9*(System.nanoTime()-clock);
+		if(printDetail>0) {
+			System.out.println("Rolling horizon finished with costs "+solution.getCosts()+" in "+cpu+"s, "+numWindows
+					+" windows with at most "+maxWindowTrips+" trips");
+		}
+	}
+
+	/**
+	 * Method that returns the time points at the stations of the window, from the start of the window on
+	 */
+	private List<TimedNode> usableTimePoints(List<TimedNode> timePoints, Instance windowInst, int windowStart) {
+		List<TimedNode> usable = new ArrayList<>();
+		for(TimedNode n: timePoints) {
+			Location station = n.getStation();
+			boolean inWindow = windowInst.isStartStation(station)||windowInst.isEndStation(station);
+			if(inWindow&&n.getTime()>=windowStart-inst.getMaxDeviation()&&n.getTime()<windowInst.getEndHorizon()) {
+				usable.add(n);
+			}
+		}
+		return usable;
+	}
+
+	public Solution getSolution() {
+		return solution;
+	}
+
+	public int getNumWindows() {
+		return numWindows;
+	}
+
+	public int getMaxWindowTrips() {
+		return maxWindowTrips;
+	}
+
+	public double getMaxWindowCpu() {
+		return maxWindowCpu;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+
+	public void setReuseTimePoints(boolean reuseTimePoints) {
+		this.reuseTimePoints = reuseTimePoints;
+	}
+}
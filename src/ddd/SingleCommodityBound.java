@@ -0,0 +1,181 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import digraph.NetworkSimplex;
+import ilog.concert.IloException;
+import problem.Instance;
+import problem.Location;
+import problem.Trip;
+import util.Pair;
+
+/**
+ * Class that computes a lower bound for the MDVSP-TS by solving the single-commodity relaxation on the partial network.
+ * All depots are aggregated into one layer, where every pull-out and pull-in arc uses the closest depot.
+ * As each multi-depot solution maps to a single-commodity solution with at most the same costs, the bound is valid.
+ *
+ * By default, the LP relaxation of the one-depot MDVSP is solved with CPLEX. As a fast option, the relaxation is solved
+ * as a pure min-cost flow problem with the network simplex. To obtain a network flow problem, all copies of a trip share
+ * one trip node with a lower bound of one, which relaxes the cover constraints (a vehicle may leave a trip at another copy
+ * than the one it entered). This bound is weaker than the LP once the network has several copies of a trip: on the full
+ * network it was not higher than on the initial partial network.
+ */
+public class SingleCommodityBound {
+
+	private final static Object RETURN_ARC = "return";
+
+	private final Instance inst;
+	private boolean useNetworkSimplex;
+	private int bound;
+	private double cpu;
+	private int pivots;
+
+	private List<Object> previousBasis; //keys of the arcs in the last optimal spanning tree, used for warm starts
+
+	private static int printDetail = 1;
+
+	public SingleCommodityBound(Instance inst) {
+		this(inst, false);
+	}
+
+	public SingleCommodityBound(Instance inst, boolean useNetworkSimplex) {
+		this.inst = inst;
+		this.useNetworkSimplex = useNetworkSimplex;
+	}
+
+	/**
+	 * Method that computes the bound on the given network, which is the network of the first depot
+	 */
+	public int computeBound(TimeSpaceGraph network) throws IloException {
+		long clock = System.nanoTime();
+		Location d0 = inst.getDepots().get(0);
+		TimeSpaceGraph aggregated = new TimeSpaceGraph(network, d0, true);
+
+		if(useNetworkSimplex) {
+			bound = solveFlow(aggregated);
+		} else {
+			bound = solveLP(aggregated);
+		}
+		cpu = 1e-9*(System.nanoTime()-clock);
+
+		if(printDetail>0) {
+			System.out.println("Single-commodity bound is "+bound+" computed in "+cpu+"s.");
+		}
+		return bound;
+	}
+
+	private int solveLP(TimeSpaceGraph aggregated) throws IloException {
+		Map<Location,TimeSpaceGraph> layer = new HashMap<>();
+		layer.put(inst.getDepots().get(0), aggregated);
+		MDVSP relaxed = new MDVSP(inst, layer, true, true);
+		relaxed.solve();
+		int lpBound = 0;
+		if(relaxed.isFeasible()) {
+			lpBound = (int) Math.ceil(relaxed.getObjectiveValue()-1e-6);
+		}
+		relaxed.cleanup();
+		return lpBound;
+	}
+
+	/**
+	 * Method that solves the relaxation as a min-cost circulation. Every timed node becomes a node, and every trip gets an
+	 * entry and an exit node connected by an arc with flow exactly one. The end depot is connected to the start depot.
+	 */
+	private int solveFlow(TimeSpaceGraph aggregated) {
+		Map<TimedNode,Integer> nodeIndex = new HashMap<>();
+		int n = 0;
+		for(TreeSet<TimedNode> atLocation: aggregated.getAllNodes().values()) {
+			for(TimedNode node: atLocation) {
+				nodeIndex.put(node, n++);
+			}
+		}
+		Map<Trip,Integer> tripIndex = new HashMap<>();
+		for(Trip t: inst.getTrips()) {
+			tripIndex.put(t, n);
+			n += 2;
+		}
+
+		NetworkSimplex simplex = new NetworkSimplex(n, aggregated.getNumArcs()+2*inst.getNumTrips()+1);
+		Map<Object,Integer> keyToArc = new LinkedHashMap<>();
+		List<Object> arcToKey = new ArrayList<>();
+		for(TimedArc a: aggregated.getArcs()) {
+			int from = nodeIndex.get(a.getFrom());
+			int to = nodeIndex.get(a.getTo());
+			if(a.getType()==TimedArc.TRIP_ARC) {
+				int tripNode = tripIndex.get(a.getTrip());
+				addArc(simplex, new Pair<>(a, 0), from, tripNode, 0, 1, 0, keyToArc, arcToKey);
+				addArc(simplex, new Pair<>(a, 1), tripNode+1, to, 0, 1, 0, keyToArc, arcToKey);
+			} else {
+				addArc(simplex, a, from, to, 0, NetworkSimplex.INF, a.getCost(), keyToArc, arcToKey);
+			}
+		}
+		for(Trip t: inst.getTrips()) {
+			int tripNode = tripIndex.get(t);
+			addArc(simplex, t, tripNode, tripNode+1, 1, 1, 0, keyToArc, arcToKey);
+		}
+		addArc(simplex, RETURN_ARC, nodeIndex.get(aggregated.getEndDepot()), nodeIndex.get(aggregated.getStartDepot()),
+				0, NetworkSimplex.INF, 0, keyToArc, arcToKey);
+
+		//warm start with the arcs that are still in the network
+		if(previousBasis!=null) {
+			List<Integer> basis = new ArrayList<>();
+			for(Object key: previousBasis) {
+				Integer arc = keyToArc.get(key);
+				if(arc!=null) {
+					basis.add(arc);
+				}
+			}
+			int[] basisArray = new int[basis.size()];
+			for(int i = 0; i<basisArray.length; i++) {
+				basisArray[i] = basis.get(i);
+			}
+			simplex.setInitialBasis(basisArray);
+		}
+
+		boolean feasible = simplex.solve();
+		pivots = simplex.getPivots();
+		if(printDetail>1) {
+			System.out.println("Network simplex finished after "+pivots+" pivots");
+		}
+		if(!feasible) {
+			previousBasis = null;
+			return 0;
+		}
+		previousBasis = new ArrayList<>();
+		for(int arc: simplex.getBasis()) {
+			previousBasis.add(arcToKey.get(arc));
+		}
+		return (int) simplex.getObjective();
+	}
+
+	private void addArc(NetworkSimplex simplex, Object key, int from, int to, long lower, long upper, long cost,
+			Map<Object,Integer> keyToArc, List<Object> arcToKey) {
+		int arc = simplex.addArc(from, to, lower, upper, cost);
+		keyToArc.put(key, arc);
+		arcToKey.add(key);
+	}
+
+	public int getBound() {
+		return bound;
+	}
+
+	public double getCpu() {
+		return cpu;
+	}
+
+	public int getPivots() {
+		return pivots;
+	}
+
+	public boolean isUseNetworkSimplex() {
+		return useNetworkSimplex;
+	}
+
+	public void setUseNetworkSimplex(boolean useNetworkSimplex) {
+		this.useNetworkSimplex = useNetworkSimplex;
+	}
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map;
 
 import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
 import problem.Instance;
 import problem.Location;
 import problem.Solution;
@@ -21,6 +22,8 @@ public class SolverMIP {
 	private int objVal;
 	
 	private int maxVehicles;
+	private IloCplex.Aborter aborter; //null if the solve cannot be stopped by another thread
+	private int threads; //0 for the default of CPLEX, which uses all cores
 	
 	public SolverMIP(Instance inst, boolean aggregate, int timeLimit) {
 		this.inst = inst;
@@ -61,12 +64,18 @@ public class SolverMIP {
 		fullModel.setAbsGap(0.99);
 		cpu = 10e-4*(System.currentTimeMillis() - startTimeDDD);
 		fullModel.setTimeLimit(Math.max(timeLimit-cpu,0));
+		if(aborter!=null) {
+			fullModel.useAborter(aborter);
+		}
+		if(threads>0) {
+			fullModel.setThreads(threads);
+		}
 		fullModel.solve();
 		lb = fullModel.getLB();
-		objVal = (int) Math.round(fullModel.getObjectiveValue());
-		System.out.println("Full model has obj: "+fullModel.getObjectiveValue());
 
 		if(fullModel.foundSolution()) {
+			objVal = (int) Math.round(fullModel.getObjectiveValue());
+			System.out.println("Full model has obj: "+fullModel.getObjectiveValue());
 			Map<Location, List<Duty>> schedules = fullModel.retrievePathDecomposition();
 			solution = new Solution(inst,schedules);
 		} 
@@ -112,6 +121,14 @@ public class SolverMIP {
 		this.maxVehicles = maxVehicles;
 	}
 
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public void setAborter(IloCplex.Aborter aborter) {
+		this.aborter = aborter;
+	}
+
 	public int getObjective() {
 		// TODO Auto-generated method stub
 		return objVal;
@@ -6,7 +6,13 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ilog.concert.IloException;
 import problem.Instance;
@@ -32,11 +38,34 @@ public class Solver_DDD
 	private final int iterLimit;
 	
 	private boolean initMore;
+	private boolean useFlowBound; //if true, the single-commodity bound is computed in every iteration
+	private boolean flowBoundSimplex; //if true, the single-commodity bound uses the faster but weaker network simplex
+	private boolean branchAndCut; //if true, infeasible candidates are cut off during the solve and refined in batches
+	private int cutBatchSize = 10; //nr of rejected candidates after which the branch-and-cut is restarted
+	private int poolSolutions = 0; //nr of solutions from the solution pool that are checked in addition to the incumbent
+	private boolean pipelined; //if true, incumbents are checked by worker threads while the LB-IP is solved
+	private int pipelineWorkers = 2;
+	private boolean pipelineIntermediatePoints; //if true, the pipeline also adds the time points of earlier incumbents
+	private boolean networkPrebuilt; //if true, the arcs of the network were already constructed by the pipeline
+	private boolean useRepairHeuristic; //if true, infeasible duties are also repaired greedily, without a trip limit
+	private boolean useLocalSearch; //if true, every new incumbent is improved by local search before the MIP start
+	private double localSearchTime = 5; //time budget of one local search run
+	private double lnsTime = 0; //time budget of the large-neighbourhood search on every new incumbent, 0 to skip
+	private boolean concurrentUB; //if true, infeasible LB solutions are repaired by a background worker
+	private int ubRepairTimeLimit = 60; //time limit of one repair of the background worker
+	private int ubWorkerThreads = 1; //CPLEX threads of the background worker, the LB-IP gets the other cores
+	private List<TimedNode> initialTimePoints; //time points discovered before, e.g. in the previous rolling-horizon window
+	private Solution initialSolution; //feasible solution that is used as first incumbent and MIP start
 	
 	private static int printDetail = 1; 
 
 	private Instance instance;
 	private Map<Location,TimeSpaceGraph> tsNetwork;
+	private SingleCommodityBound flowBound;
+	private IncumbentBroker broker;
+	private LargeNeighbourhoodSearch lns; //kept across incumbents, such that its neighbourhoods keep changing
+	private UpperBoundWorker ubWorker;
+	private Thread ubThread;
 	
 	private Solution sol; //the final solution
 	private Solution sol_postMinimized; //final solution with deviation minimized
@@ -44,6 +73,7 @@ public class Solver_DDD
 
 
 	private Solution bestSolution; //the best solution so far
+	private Solution improvedSolution; //the last solution that was improved by local search
 	private int objective;
 	private boolean solved;
 	private int lb;
@@ -53,6 +83,7 @@ public class Solver_DDD
 	private double cpuIPs;
 	private double cpuRefining;
 	private double cpuUB;
+	private double cpuFlowBound;
 	
 	private int iterations; 
 	private int nodes;
@@ -62,6 +93,7 @@ public class Solver_DDD
 	private Set<Duty> feasibleDuties; //set with feasible duties;
 	
 	private List<Integer> lbs;
+	private List<Integer> flowLbs;
 	private List<Integer> ubs;
 	private List<Integer> vehiclesLB;
 	private List<Integer> vehiclesUB;
@@ -81,6 +113,7 @@ public class Solver_DDD
 		this.iterLimit = iterLimit;
 		
 		lbs = new ArrayList<>();
+		flowLbs = new ArrayList<>();
 		numVars = new ArrayList<>();
 		ubs = new ArrayList<>();
 		vehiclesLB = new ArrayList<>();
@@ -93,6 +126,7 @@ public class Solver_DDD
 		cpuIPs = 0;
 		cpuRefining = 0;
 		cpuUB = 0;
+		cpuFlowBound = 0;
 	}
 	
 	/**
@@ -107,10 +141,28 @@ public class Solver_DDD
 		solved = false;
 		int numIterations = 0;
 		initNetwork();
+		if(initialSolution!=null) {
+			bestSolution = initialSolution;
+			sol = bestSolution;
+			ub = initialSolution.getCosts();
+		}
+		if(useFlowBound) {
+			flowBound = new SingleCommodityBound(instance, flowBoundSimplex);
+		}
+		if(concurrentUB) {
+			startUpperBoundWorker();
+		}
 
 		//main loop
 		while (!solved && cpu < TIME_LIMIT && numIterations<iterLimit) 
 		{
+			if(concurrentUB&&collectBrokerSolution()&&ub-lb<DDD_ABS_TOL) {
+				solved = true;
+				sol = bestSolution;
+				this.objective = ub;
+				System.out.println("Solved by the upper bound worker! Objective = "+this.objective + " and lb = "+lb);
+				break;
+			}
 			numIterations++;
 			printProgress1(numIterations);
 			
@@ -126,14 +178,69 @@ public class Solver_DDD
 				break;
 			}
 			
+			// Cheap bound from the single-commodity relaxation
+			if(useFlowBound) {
+				clock = System.nanoTime();
+				int flowLB = flowBound.computeBound(tsNetwork.get(instance.getDepots().get(0)));
+				cpuFlowBound += 1e-9*(System.nanoTime()-clock);
+				flowLbs.add(flowLB);
+				lb = Math.max(lb, flowLB);
+				if(bestSolution!=null&&ub-lb<DDD_ABS_TOL) {
+					//the LB-IP cannot improve on the incumbent anymore
+					lbs.add(lb);
+					ubs.add(ub);
+					solved = true;
+					sol = bestSolution;
+					this.objective = ub;
+					System.out.println("Solved by the single-commodity bound! Objective = "+this.objective + " and lb = "+lb);
+					cpu = 10e-4*(System.currentTimeMillis() - startTimeDDD);
+					cpus.add(cpu);
+					break;
+				}
+			}
+			
 			// Solve problem on partial network
 			clock = System.nanoTime();
 			MDVSP modelDDD = new MDVSP(instance, tsNetwork, false, false);
 			setStartSolutionAndGapAndTimeLimit(modelDDD);
+			if(concurrentUB) {
+				//leave the cores of the background worker free
+				modelDDD.setThreads(Math.max(1, Runtime.getRuntime().availableProcessors()-ubWorkerThreads));
+			}
+			if(branchAndCut) {
+				modelDDD.useFeasibilityCallback(cutBatchSize);
+			}
+			RefinementPipeline pipeline = null;
+			if(pipelined) {
+				pipeline = new RefinementPipeline(instance, pipelineWorkers, pipelineIntermediatePoints);
+				pipeline.start(modelDDD, tsNetwork.get(instance.getDepots().get(0)));
+			}
 			modelDDD.solve();
+			if(pipeline!=null) {
+				pipeline.finish();
+			}
 			cpuIPs += 1e-9*(System.nanoTime()-clock);
 			System.out.println("Cpu IPs: "+cpuIPs);
 			
+			if(branchAndCut&&modelDDD.getNumRejected()>0) {
+				clock = System.nanoTime();
+				refineAfterCuts(modelDDD);
+				if(pipeline!=null) {
+					addTimePoints(pipeline.getIntermediateTimePoints());
+				}
+				cpuRefining += 1e-9*(System.nanoTime()-clock);
+				cpu = 10e-4*(System.currentTimeMillis() - startTimeDDD);
+				cpus.add(cpu);
+				if(bestSolution!=null&&ub-lb<DDD_ABS_TOL) {
+					solved = true;
+					sol = bestSolution;
+					this.objective = ub;
+					System.out.println("Solved! Objective = "+this.objective + " and lb = "+lb);
+					break;
+				}
+				continue;
+			}
+			
 			// Save results mathematical model and store the solution
 			int objDDD = (int) modelDDD.getObjectiveValue();
 			lb = Math.max(lb, modelDDD.getLB());
@@ -144,6 +251,7 @@ public class Solver_DDD
 			//retrieve duties or superduties (connected components of duties)
 			clock = System.nanoTime();
 			Map<Location, List<Duty>> schedules = modelDDD.retrievePathDecomposition();
+			List<Map<Location, List<Duty>>> poolSchedules = retrievePoolSolutions(modelDDD);
 			Map<Location, List<SuperDuty>> supDutyMap = null;
 			modelDDD.cleanup();
 			determineNrVehicles(schedules);
@@ -153,19 +261,40 @@ public class Solver_DDD
 			if(refinementStrat!=1&&!modelDDD.solutionHasCycle()) {
 				supDutyMap = modelDDD.retrieveSuperDutyDecomposition();
 			}
+			boolean reusedPipeline = false;
 			if(supDutyMap!=null) {
 				continuousTimeFeasible = checkFeasibilitySuper(supDutyMap);
+			} else if(pipeline!=null&&pipeline.isLatestIncumbent(modelDDD.getFlows())) {
+				//the workers already checked this incumbent and built the refined network
+				continuousTimeFeasible = usePipelineResult(pipeline);
+				reusedPipeline = true;
 			} else {
 				continuousTimeFeasible = checkFeasibility(schedules);
 			}
 			System.out.println("continu feas: "+continuousTimeFeasible);
+			if(!poolSchedules.isEmpty()) {
+				checkPoolSolutions(poolSchedules);
+			}
+			if(pipeline!=null) {
+				for(Map<Location, List<Duty>> candidate: pipeline.getFeasibleCandidates()) {
+					addUpperBoundCandidate(candidate);
+				}
+				if(!reusedPipeline) {
+					addTimePoints(pipeline.getIntermediateTimePoints());
+				}
+			}
 			
 			cpuRefining += 1e-9*(System.nanoTime()-clock);
 			
 			if (!continuousTimeFeasible)
 			{
 				clock = System.nanoTime();
-				determineUpperBound();
+				if(concurrentUB) {
+					broker.postRepairJob(feasibleDuties, infeasibleDuties);
+					ubs.add(ub);
+				} else {
+					determineUpperBound();
+				}
 				cpuUB += 1e-9*(System.nanoTime()-clock);
 			}
 			else 
@@ -183,11 +312,14 @@ public class Solver_DDD
 					sol = bestSolution;
 				}
 				printProgress4();
+				if(concurrentUB) {
+					collectBrokerSolution();
+				}
 				double dddAbsGap = (ub-lb);
 				if(dddAbsGap<DDD_ABS_TOL) {
 					solved = true;
 					sol = bestSolution;
-					this.objective = trueObj;
+					this.objective = ub;
 					System.out.println("Solved! Objective = "+this.objective + " and lb = "+lb);
 					if(Solver_DDD.POSTPROCESSING) {
 						if(this.optimize_postprocessing) {
@@ -203,6 +335,9 @@ public class Solver_DDD
 		}
 		
 		iterations = numIterations;
+		if(concurrentUB) {
+			stopUpperBoundWorker();
+		}
 		
 		if(!solved) {
 			//time run out
@@ -212,6 +347,136 @@ public class Solver_DDD
 		printResults(); 
 	}
 	
+	/**
+	 * Method that processes a branch-and-cut round in which candidates were rejected. The incumbent is checked as usual,
+	 * as only the candidates with a forced infeasible duty are cut off, and all collected time points are added at once.
+	 */
+	private void refineAfterCuts(MDVSP modelDDD) throws IloException {
+		int iterLB = modelDDD.getLB(); //the cuts are valid, so the bound of the aborted solve is valid as well
+		lb = Math.max(lb, iterLB);
+		lbs.add(iterLB);
+		numVars.add(modelDDD.getNumVariables());
+		if(printDetail>0) {
+			System.out.println("Rejected "+modelDDD.getNumRejected()+" candidates, lb is "+iterLB);
+		}
+		
+		int trueObj = Integer.MAX_VALUE;
+		if(modelDDD.foundSolution()) {
+			Map<Location, List<Duty>> schedules = modelDDD.retrievePathDecomposition();
+			determineNrVehicles(schedules);
+			if(checkFeasibility(schedules)) {
+				Solution newSolution = new Solution(instance,feasibleDuties);
+				trueObj = newSolution.getCosts();
+				if(trueObj<ub) {
+					ub = trueObj;
+					bestSolution = newSolution;
+					sol = bestSolution;
+					printProgress4();
+				}
+			}
+		} else {
+			vehiclesLB.add(Integer.MAX_VALUE);
+		}
+		ubs.add(trueObj);
+		modelDDD.cleanup();
+		
+		for(List<TimedNode> newTimePoints: modelDDD.getLazyTimePoints()) {
+			addTimePoints(newTimePoints);
+		}
+	}
+	
+	/**
+	 * Method that retrieves the best solutions from the solution pool of the LB-IP, other than the incumbent
+	 */
+	private List<Map<Location, List<Duty>>> retrievePoolSolutions(MDVSP modelDDD) throws IloException {
+		List<Map<Location, List<Duty>>> poolSchedules = new ArrayList<>();
+		if(poolSolutions<=0) {
+			return poolSchedules;
+		}
+		List<Integer> indices = new ArrayList<>();
+		Map<Integer,Double> objectives = new HashMap<>();
+		for(int i = 0; i<modelDDD.getNumPoolSolutions(); i++) {
+			indices.add(i);
+			objectives.put(i, modelDDD.getPoolObjectiveValue(i));
+		}
+		indices.sort((i1,i2) -> Double.compare(objectives.get(i1), objectives.get(i2)));
+		boolean skippedIncumbent = false;
+		for(int i = 0; i<indices.size()&&poolSchedules.size()<poolSolutions; i++) {
+			if(!skippedIncumbent&&modelDDD.isIncumbent(indices.get(i))) {
+				//the incumbent is already checked by the refinement
+				skippedIncumbent = true;
+				continue;
+			}
+			poolSchedules.add(modelDDD.retrievePathDecomposition(indices.get(i)));
+		}
+		return poolSchedules;
+	}
+	
+	/**
+	 * Method that checks the pool solutions in parallel. The union of all suggested time points is added to the network,
+	 * and every pool solution that is feasible in continuous time is a candidate for the upper bound.
+	 */
+	private void checkPoolSolutions(List<Map<Location, List<Duty>>> poolSchedules) throws IloException {
+		int threads = Math.min(poolSchedules.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<List<List<TimedNode>>>> results = new ArrayList<>();
+		for(Map<Location, List<Duty>> schedules: poolSchedules) {
+			results.add(executor.submit(() -> suggestTimePoints(schedules)));
+		}
+		
+		Set<TimedNode> newTimePoints = new LinkedHashSet<>();
+		int numFeasible = 0;
+		try {
+			for(int i = 0; i<results.size(); i++) {
+				List<List<TimedNode>> suggested = results.get(i).get();
+				if(suggested.isEmpty()) {
+					numFeasible++;
+					addUpperBoundCandidate(poolSchedules.get(i));
+				}
+				for(List<TimedNode> points: suggested) {
+					newTimePoints.addAll(points);
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new Error("Checking the pool solutions failed", e);
+		} finally {
+			executor.shutdown();
+		}
+		if(printDetail>0) {
+			System.out.println("Checked "+poolSchedules.size()+" pool solutions, "+numFeasible+" are feasible and "
+					+newTimePoints.size()+" time points are suggested");
+		}
+		addTimePoints(new ArrayList<>(newTimePoints));
+	}
+	
+	/**
+	 * Method that updates the upper bound with a schedule that is feasible in continuous time
+	 */
+	private void addUpperBoundCandidate(Map<Location, List<Duty>> schedules) throws IloException {
+		Solution candidate = new Solution(instance, schedules);
+		if(candidate.getCosts()<ub) {
+			ub = candidate.getCosts();
+			bestSolution = candidate;
+			printProgress4();
+		}
+	}
+	
+	/**
+	 * Method that returns the time points suggested by all infeasible duties of a schedule
+	 */
+	private List<List<TimedNode>> suggestTimePoints(Map<Location, List<Duty>> schedules) {
+		List<List<TimedNode>> suggested = new ArrayList<>();
+		for(Location depot: schedules.keySet()) {
+			for(Duty d: schedules.get(depot)) {
+				List<TimedNode> newTimePoints = d.feasibilityCheck(instance.getMaxDeviation(), false);
+				if(!newTimePoints.isEmpty()) {
+					suggested.add(newTimePoints);
+				}
+			}
+		}
+		return suggested;
+	}
+	
 	private void determineNrVehicles(Map<Location, List<Duty>> schedules) {
 		int veh = 0;
 		for(Location l: schedules.keySet()) {
@@ -221,6 +486,9 @@ public class Solver_DDD
 	}
 
 	private void setStartSolutionAndGapAndTimeLimit(MDVSP modelDDD) throws IloException {
+		if((useLocalSearch||lnsTime>0)&&bestSolution!=null&&bestSolution!=improvedSolution) {
+			improveIncumbent();
+		}
 		if(bestSolution!=null) {
 			modelDDD.setStartSolution(bestSolution.getDuties());
 		}
@@ -235,6 +503,33 @@ public class Solver_DDD
 		modelDDD.setTimeLimit(TIME_LIMIT-cpu); //added 24-02
 	}
 	
+	/**
+	 * Method that improves the incumbent with local search and/or the large-neighbourhood search, such that the LB-IP gets
+	 * a better MIP start
+	 */
+	private void improveIncumbent() throws IloException {
+		double clock = System.nanoTime();
+		Solution improved = bestSolution;
+		if(useLocalSearch) {
+			LocalSearch localSearch = new LocalSearch(instance, Runtime.getRuntime().availableProcessors());
+			improved = localSearch.improve(improved, localSearchTime);
+		}
+		if(lnsTime>0) {
+			if(lns==null) {
+				lns = new LargeNeighbourhoodSearch(instance, aggregate, Runtime.getRuntime().availableProcessors(), 1);
+			}
+			improved = lns.improve(improved, Math.min(lnsTime, TIME_LIMIT-cpu));
+		}
+		if(improved.getCosts()<ub) {
+			ub = improved.getCosts();
+			bestSolution = improved;
+			sol = bestSolution;
+			printProgress4();
+		}
+		improvedSolution = bestSolution;
+		cpuUB += 1e-9*(System.nanoTime()-clock);
+	}
+	
 	private void printProgress4() {
 		if(printDetail>0) {
 			System.out.println("Found new upper bound: "+ub);
@@ -266,25 +561,33 @@ public class Solver_DDD
 		if(printDetail>0) { 
 			System.out.println("Finished after " + iterations + " iterations!");
 			System.out.println("DDD solved in " + cpu + "s.");
-			System.out.print("[");
-			
-			for (int a = 0; a < lbs.size(); a++)
-			{
-				System.out.print(lbs.get(a));
+			printList(lbs);
+			if(useFlowBound) {
+				System.out.print("Single-commodity bounds (" + cpuFlowBound + "s): ");
+				printList(flowLbs);
+			}
+		}
+		
+	}
+	
+	private void printList(List<Integer> values) {
+		System.out.print("[");
+		
+		for (int a = 0; a < values.size(); a++)
+		{
+			System.out.print(values.get(a));
 
-				if (a == lbs.size() - 1)
-				{
-					System.out.print("]");
-				}
-				else
-				{
-					System.out.print(", ");
-				}
+			if (a == values.size() - 1)
+			{
+				System.out.print("]");
+			}
+			else
+			{
+				System.out.print(", ");
 			}
-			
-			System.out.println();
 		}
 		
+		System.out.println();
 	}
 
 	/**
@@ -326,9 +629,10 @@ public class Solver_DDD
 	private void copyNetworks(int numIterations) {
 		Location d0 = instance.getDepots().get(0);
 		TimeSpaceGraph n0 = tsNetwork.get(d0);
-		if(numIterations>1) {
+		if(numIterations>1&&!networkPrebuilt) {
 			n0.constructArcs();
 		}
+		networkPrebuilt = false;
 		for(Location d: instance.getDepots()) {
 			if(d!=d0) {
 				tsNetwork.put(d, new TimeSpaceGraph(n0,d));
@@ -357,6 +661,47 @@ public class Solver_DDD
 		nodesPerIteration.add(nodes);
 	}
 
+	private void startUpperBoundWorker() {
+		broker = new IncumbentBroker(instance);
+		ubWorker = new UpperBoundWorker(instance, aggregate, broker, ubRepairTimeLimit, instance.getNumTrips(),
+				ubWorkerThreads);
+		ubThread = new Thread(ubWorker, "ub-worker");
+		ubThread.setDaemon(true);
+		ubThread.start();
+	}
+	
+	/**
+	 * Method that stops the upper bound worker without waiting for its running repair, which is aborted, and takes its
+	 * best solution
+	 */
+	private void stopUpperBoundWorker() {
+		broker.close();
+		ubWorker.stop();
+		try {
+			//the aborted sub-MIP returns quickly, the thread is a daemon in case it does not
+			ubThread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		collectBrokerSolution();
+		if(printDetail>0) {
+			System.out.println("Upper bound worker improved the solution "+broker.getNumImprovements()+" times");
+		}
+	}
+	
+	/**
+	 * Method that takes the best solution of the upper bound worker, returns true if it improved the upper bound
+	 */
+	private boolean collectBrokerSolution() {
+		if(broker.getBestCosts()<ub) {
+			ub = broker.getBestCosts();
+			bestSolution = broker.getBest();
+			printProgress4();
+			return true;
+		}
+		return false;
+	}
+	
 	private void determineUpperBound() throws IloException {
 		Solution feasibilized = makeFeasible();
 		if(feasibilized==null) {
@@ -400,15 +745,27 @@ public class Solver_DDD
 			System.out.println("The number of served trips is : "+served.size());
 		}
 		
+		Solution repaired = null;
+		if(useRepairHeuristic) {
+			repaired = new RepairHeuristic(instance).repair(feasibleDuties, infeasibleDuties);
+		}
+		
 		if(unserved.size()<Solver_DDD.maxTripsUB) {
 			Instance subInst = new Instance(instance,unserved);
 			SolverMIP fullSolver = new SolverMIP(subInst,aggregate,TIME_LIMIT);
 			fullSolver.solve();
-			feasibleDuties.addAll(fullSolver.getSolution().getDuties());;
-			return new Solution(instance,feasibleDuties);
-		} else {
-			return null;
-		}
+			if(fullSolver.getSolution()==null) {
+				//no solution within the time limit
+				return repaired;
+			}
+			Set<Duty> duties = new HashSet<>(feasibleDuties);
+			duties.addAll(fullSolver.getSolution().getDuties());
+			Solution resolved = new Solution(instance,duties);
+			if(repaired==null||resolved.getCosts()<=repaired.getCosts()) {
+				return resolved;
+			}
+		} 
+		return repaired;
 
 	}
 	
@@ -456,6 +813,21 @@ public class Solver_DDD
 		return optimal;
 	}
 	
+	/**
+	 * Method that takes the feasibility check of the final incumbent from the pipeline, and the refined network if the
+	 * workers built one
+	 */
+	private boolean usePipelineResult(RefinementPipeline pipeline) {
+		feasibleDuties = new HashSet<>(pipeline.getLatestFeasible());
+		infeasibleDuties = new LinkedHashSet<>(pipeline.getLatestInfeasible());
+		TimeSpaceGraph refined = pipeline.getRefinedNetwork();
+		if(refined!=null) {
+			tsNetwork.put(instance.getDepots().get(0), refined);
+			networkPrebuilt = true;
+		}
+		return infeasibleDuties.isEmpty();
+	}
+	
 	private boolean checkFeasibilitySuper(Map<Location, List<SuperDuty>> schedules) throws IloException {
 		// Step 3 - Convert solution
 		if(printDetail>1) {
@@ -493,6 +865,13 @@ public class Solver_DDD
 		long startTimeStep1 = System.currentTimeMillis();
 		tsNetwork = new HashMap<>();
 		tsNetwork.put(instance.getDepots().get(0), new TimeSpaceGraph(instance,false,instance.getDepots().get(0),deadhead_type,aggregate,initMore));
+		if(initialTimePoints!=null) {
+			TimeSpaceGraph n0 = tsNetwork.get(instance.getDepots().get(0));
+			for(TimedNode n: initialTimePoints) {
+				n0.addNode(n.getStation(), n.getTime());
+			}
+			n0.constructArcs();
+		}
 
 		/*for(Location d: instance.getDepots()) {
 			tsNetwork.put(d, new TimeSpaceGraph(instance,false,d,deadhead_type));
@@ -511,6 +890,9 @@ public class Solver_DDD
 		if(printDetail>1) {
 			System.out.println("\n Infeasible subroute: ");
 		}
+		if(!newTimePoints.isEmpty()) {
+			networkPrebuilt = false;
+		}
 		for (TimedNode n : newTimePoints) 
 		{
 			if(printDetail>1) {
@@ -522,6 +904,19 @@ public class Solver_DDD
 		}
 	}
 	
+	/**
+	 * Method that returns the time points of the stations in the current network
+	 */
+	public List<TimedNode> getTimePoints() {
+		List<TimedNode> timePoints = new ArrayList<>();
+		for(Entry<Location, TreeSet<TimedNode>> entry: tsNetwork.get(instance.getDepots().get(0)).getAllNodes().entrySet()) {
+			if(!entry.getKey().isDepot()) {
+				timePoints.addAll(entry.getValue());
+			}
+		}
+		return timePoints;
+	}
+
 	public int getFirstLB() {
 		return lbs.get(0);
 	}
@@ -589,6 +984,10 @@ public class Solver_DDD
 		return lbs;
 	}
 
+	public List<Integer> getFlowLbs() {
+		return flowLbs;
+	}
+
 	public List<Integer> getUbs() {
 		return ubs;
 	}
@@ -625,11 +1024,16 @@ public class Solver_DDD
 		return cpuUB;
 	}
 
+	public double getCpuFlowBound() {
+		return cpuFlowBound;
+	}
+
 	public void printDDDstats(PrintWriter pw) {
 		System.out.println("Printing DDD stats");
-		pw.println("iteration,nodes,arcs,lb,ub,cpu");
+		pw.println("iteration,nodes,arcs,lb,flowLb,ub,cpu");
 		for(int i = 0; i<this.iterations; i++) {
-			pw.println((i+1)+","+nodesPerIteration.get(i)+","+arcsPerIteration.get(i)+","+lbs.get(i)+","+
+			String flowLb = (i<flowLbs.size()) ? flowLbs.get(i).toString() : "";
+			pw.println((i+1)+","+nodesPerIteration.get(i)+","+arcsPerIteration.get(i)+","+lbs.get(i)+","+flowLb+","+
 					ubs.get(i)+","+cpus.get(i));
 		}
 		pw.flush();
@@ -658,6 +1062,114 @@ public class Solver_DDD
 	public void setInitMore(boolean initMore) {
 		this.initMore = initMore;
 	}
+
+	public boolean isBranchAndCut() {
+		return branchAndCut;
+	}
+
+	public void setBranchAndCut(boolean branchAndCut) {
+		this.branchAndCut = branchAndCut;
+	}
+
+	public int getCutBatchSize() {
+		return cutBatchSize;
+	}
+
+	public void setCutBatchSize(int cutBatchSize) {
+		this.cutBatchSize = cutBatchSize;
+	}
+
+	public int getPoolSolutions() {
+		return poolSolutions;
+	}
+
+	public void setPoolSolutions(int poolSolutions) {
+		this.poolSolutions = poolSolutions;
+	}
+
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	public int getPipelineWorkers() {
+		return pipelineWorkers;
+	}
+
+	public void setPipelineWorkers(int pipelineWorkers) {
+		this.pipelineWorkers = pipelineWorkers;
+	}
+
+	public boolean isPipelineIntermediatePoints() {
+		return pipelineIntermediatePoints;
+	}
+
+	public void setPipelineIntermediatePoints(boolean pipelineIntermediatePoints) {
+		this.pipelineIntermediatePoints = pipelineIntermediatePoints;
+	}
+
+	public boolean isUseRepairHeuristic() {
+		return useRepairHeuristic;
+	}
+
+	public void setUseRepairHeuristic(boolean useRepairHeuristic) {
+		this.useRepairHeuristic = useRepairHeuristic;
+	}
+
+	public boolean isUseLocalSearch() {
+		return useLocalSearch;
+	}
+
+	public void setUseLocalSearch(boolean useLocalSearch) {
+		this.useLocalSearch = useLocalSearch;
+	}
+
+	public void setLocalSearchTime(double localSearchTime) {
+		this.localSearchTime = localSearchTime;
+	}
+
+	public void setLnsTime(double lnsTime) {
+		this.lnsTime = lnsTime;
+	}
+
+	public boolean isConcurrentUB() {
+		return concurrentUB;
+	}
+
+	public void setConcurrentUB(boolean concurrentUB) {
+		this.concurrentUB = concurrentUB;
+	}
+
+	public void setUbRepairTimeLimit(int ubRepairTimeLimit) {
+		this.ubRepairTimeLimit = ubRepairTimeLimit;
+	}
+
+	public void setUbWorkerThreads(int ubWorkerThreads) {
+		this.ubWorkerThreads = ubWorkerThreads;
+	}
+
+	public void setInitialTimePoints(List<TimedNode> initialTimePoints) {
+		this.initialTimePoints = initialTimePoints;
+	}
+
+	public void setInitialSolution(Solution initialSolution) {
+		this.initialSolution = initialSolution;
+	}
+
+	public boolean isUseFlowBound() {
+		return useFlowBound;
+	}
+
+	public void setUseFlowBound(boolean useFlowBound) {
+		this.useFlowBound = useFlowBound;
+	}
+
+	public void setFlowBoundSimplex(boolean flowBoundSimplex) {
+		this.flowBoundSimplex = flowBoundSimplex;
+	}
 	
 	
 	
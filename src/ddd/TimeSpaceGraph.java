@@ -23,6 +23,7 @@ public class TimeSpaceGraph
 	private boolean fullNetwork;
 	private int deadhead_type;
 	private boolean aggregating;
+	private boolean aggregatedDepots; //if true, the pull-out and pull-in arcs represent the closest depot
 	
 	private Location depot;
 	private TimedNode startDepot;
@@ -60,12 +61,42 @@ public class TimeSpaceGraph
 		this.constructArcs();
 	}
 	
+	/**
+	 * Copy-constructor that copies the time points but not the arcs, such that time points can be added and the arcs
+	 * constructed without changing the original network.
+	 */
+	public TimeSpaceGraph(TimeSpaceGraph toCopy) {
+		this.inst = toCopy.inst;
+		this.fullNetwork = toCopy.fullNetwork;
+		this.depot = toCopy.depot;
+		this.deadhead_type = toCopy.deadhead_type;
+		this.aggregating = toCopy.aggregating;
+		this.aggregatedDepots = toCopy.aggregatedDepots;
+		this.nodes = new LinkedHashMap<>();
+		for(Location l: toCopy.nodes.keySet()) {
+			nodes.put(l, new TreeSet<>(toCopy.nodes.get(l)));
+		}
+		this.startDepot = toCopy.startDepot;
+		this.endDepot = toCopy.endDepot;
+		this.tripArcs = new LinkedHashMap<>();
+		this.deadheadArcs = new LinkedHashMap<>();
+	}
+
 	/**
 	 * Copy-constructor from another depot. 
 	 */
 	public TimeSpaceGraph(TimeSpaceGraph toCopy, Location depot) {
+		this(toCopy, depot, false);
+	}
+	
+	/**
+	 * Copy-constructor from another depot. If aggregatedDepots is true, the layer represents all depots at once: 
+	 * every pull-out and pull-in arc gets the travel time of the closest depot.
+	 */
+	public TimeSpaceGraph(TimeSpaceGraph toCopy, Location depot, boolean aggregatedDepots) {
 		this.inst = toCopy.inst;
 		this.depot = depot;
+		this.aggregatedDepots = aggregatedDepots;
 		arcs = new ArrayList<>();
 		outArcs = new LinkedHashMap<>();
 		inArcs = new LinkedHashMap<>();
@@ -268,6 +299,12 @@ public class TimeSpaceGraph
 				
 				int pullOutTime = depot.getTimeTo(loc);
 				int pullInTime = depot.getTimeFrom(loc);
+				if(aggregatedDepots) {
+					for(Location d: inst.getDepots()) {
+						pullOutTime = Math.min(pullOutTime, d.getTimeTo(loc));
+						pullInTime = Math.min(pullInTime, d.getTimeFrom(loc));
+					}
+				}
 				
 				if(pullOutTime<1000) {
 					TimedArc pullout = new TimedArc(startDepot, first, TimedArc.PULLOUT_ARC, Integer.MAX_VALUE, pullOutTime);
@@ -0,0 +1,96 @@
+package ddd;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+import problem.Instance;
+import problem.Solution;
+import problem.Trip;
+import util.Pair;
+
+/**
+ * Class that repairs infeasible LB solutions in a background thread. The trips of the infeasible duties are rescheduled
+ * with a MIP on the full network of the sub-instance, which uses its own CPLEX environment. Improved solutions are
+ * published through the broker. When the worker is stopped, the running repair is aborted, as its result would be
+ * discarded anyway.
+ */
+public class UpperBoundWorker implements Runnable {
+	private final Instance inst;
+	private final boolean aggregate;
+	private final IncumbentBroker broker;
+	private final int repairTimeLimit;
+	private final int maxTrips; //nr of unserved trips up to which a repair is tried
+	private final int threads; //CPLEX threads of a repair, the other cores are left to the LB-IP
+	private final IloCplex.Aborter aborter;
+	private int numRepairs;
+
+	private static int printDetail = 1;
+
+	public UpperBoundWorker(Instance inst, boolean aggregate, IncumbentBroker broker, int repairTimeLimit, int maxTrips,
+			int threads) {
+		this.inst = inst;
+		this.aggregate = aggregate;
+		this.broker = broker;
+		this.repairTimeLimit = repairTimeLimit;
+		this.maxTrips = maxTrips;
+		this.threads = threads;
+		this.aborter = new IloCplex.Aborter();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while(true) {
+				Pair<Set<Duty>,Set<Duty>> job = broker.takeRepairJob();
+				if(job==null) {
+					break;
+				}
+				repair(job.getA(), job.getB());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IloException e) {
+			System.out.println("Upper bound worker stopped: "+e.getMessage());
+		}
+	}
+
+	private void repair(Set<Duty> feasible, Set<Duty> infeasible) throws IloException {
+		List<Trip> unserved = new ArrayList<>();
+		for(Duty d: infeasible) {
+			unserved.addAll(d.getTrips());
+		}
+		if(unserved.isEmpty()||unserved.size()>maxTrips) {
+			return;
+		}
+		numRepairs++;
+		Instance subInst = new Instance(inst,unserved);
+		SolverMIP subSolver = new SolverMIP(subInst,aggregate,repairTimeLimit);
+		subSolver.setAborter(aborter);
+		subSolver.setThreads(threads);
+		subSolver.solve();
+		if(subSolver.getSolution()==null||broker.isClosed()) {
+			return;
+		}
+		feasible.addAll(subSolver.getSolution().getDuties());
+		Solution repaired = new Solution(inst,feasible);
+		if(!repaired.isFeasible()) {
+			throw new Error("The repaired solution is not feasible");
+		}
+		if(broker.offer(repaired)&&printDetail>0) {
+			System.out.println("Upper bound worker found solution with costs "+repaired.getCosts());
+		}
+	}
+
+	/**
+	 * Method that aborts the running repair and every later one, called from another thread after the broker is closed
+	 */
+	public void stop() {
+		aborter.abort();
+	}
+
+	public int getNumRepairs() {
+		return numRepairs;
+	}
+}
@@ -0,0 +1,652 @@
+package digraph;
+
+import java.util.Arrays;
+
+/**
+ * Primal network simplex for the minimum cost flow problem. Nodes are numbered 0,...,n-1 and arcs are numbered in the
+ * order in which they are added. All data is stored in primitive arrays, and the spanning tree is stored with parent
+ * pointers and child lists, such that a pivot only touches the cycle and the subtree that is moved.
+ *
+ * The algorithm starts from the usual big-M basis, where every node is connected to an artificial root. A warm start
+ * can be given as a set of arcs that were in the optimal tree of a previous (similar) problem. These arcs are put in
+ * the initial tree as long as the resulting tree solution is strongly feasible, which makes sure the algorithm does not
+ * cycle.
+ */
+public class NetworkSimplex
+{
+	public final static long INF = Long.MAX_VALUE / 4;
+
+	private final static int STATE_TREE = 0;
+	private final static int STATE_LOWER = 1;
+	private final static int STATE_UPPER = -1;
+
+	private final int numNodes;
+	private int numArcs;
+
+	// input data
+	private int[] source;
+	private int[] target;
+	private long[] lower;
+	private long[] upper;
+	private long[] cost;
+	private long[] supply;
+	private int[] initialBasis;
+
+	// working data, including the artificial root and the artificial arcs
+	private int root;
+	private long[] cap;
+	private long[] flow;
+	private int[] state;
+	private int[] parent;
+	private int[] pred;
+	private boolean[] predUp; // true if the arc to the parent is directed towards the parent
+	private int[] depth;
+	private long[] pi;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private int[] prevSibling;
+	private int[] stack;
+
+	private int nextArc;
+	private int blockSize;
+	private int pivots;
+	private boolean feasible;
+	private long objective;
+
+	public NetworkSimplex(int numNodes, int expectedArcs)
+	{
+		this.numNodes = numNodes;
+		int size = Math.max(expectedArcs, 16);
+		source = new int[size];
+		target = new int[size];
+		lower = new long[size];
+		upper = new long[size];
+		cost = new long[size];
+		supply = new long[numNodes];
+	}
+
+	/**
+	 * Adds an arc and returns its index
+	 */
+	public int addArc(int from, int to, long lowerBound, long upperBound, long arcCost)
+	{
+		if (from < 0 || from >= numNodes || to < 0 || to >= numNodes)
+		{
+			throw new IllegalArgumentException("Unable to add arcs between nodes not in the graph");
+		}
+		if (lowerBound > upperBound)
+		{
+			throw new IllegalArgumentException("Lower bound exceeds upper bound");
+		}
+		if (numArcs == source.length)
+		{
+			int size = 2 * numArcs;
+			source = Arrays.copyOf(source, size);
+			target = Arrays.copyOf(target, size);
+			lower = Arrays.copyOf(lower, size);
+			upper = Arrays.copyOf(upper, size);
+			cost = Arrays.copyOf(cost, size);
+		}
+		source[numArcs] = from;
+		target[numArcs] = to;
+		lower[numArcs] = lowerBound;
+		upper[numArcs] = Math.min(upperBound, INF);
+		cost[numArcs] = arcCost;
+		return numArcs++;
+	}
+
+	public void setSupply(int node, long value)
+	{
+		supply[node] = value;
+	}
+
+	/**
+	 * Sets the arcs that should be used to build the initial spanning tree
+	 */
+	public void setInitialBasis(int[] arcs)
+	{
+		this.initialBasis = arcs;
+	}
+
+	/**
+	 * Solves the problem, and returns true if a feasible flow exists
+	 */
+	public boolean solve()
+	{
+		long totalSupply = 0;
+		for (int i = 0; i < numNodes; i++)
+		{
+			totalSupply += supply[i];
+		}
+		if (totalSupply != 0)
+		{
+			throw new IllegalArgumentException("Supplies do not sum to zero: " + totalSupply);
+		}
+
+		initialize();
+		pivots = 0;
+		int entering = findEnteringArc();
+		while (entering >= 0)
+		{
+			pivot(entering);
+			pivots++;
+			entering = findEnteringArc();
+		}
+
+		feasible = true;
+		for (int v = 0; v < numNodes; v++)
+		{
+			if (flow[numArcs + v] > 0)
+			{
+				feasible = false;
+			}
+		}
+		objective = 0;
+		for (int a = 0; a < numArcs; a++)
+		{
+			objective += cost[a] * (flow[a] + lower[a]);
+		}
+		return feasible;
+	}
+
+	/**
+	 * Method that builds the initial strongly feasible spanning tree
+	 */
+	private void initialize()
+	{
+		int numNodesTotal = numNodes + 1;
+		int numArcsTotal = numArcs + numNodes;
+		root = numNodes;
+
+		cap = new long[numArcsTotal];
+		flow = new long[numArcsTotal];
+		state = new int[numArcsTotal];
+		parent = new int[numNodesTotal];
+		pred = new int[numNodesTotal];
+		predUp = new boolean[numNodesTotal];
+		depth = new int[numNodesTotal];
+		pi = new long[numNodesTotal];
+		firstChild = new int[numNodesTotal];
+		nextSibling = new int[numNodesTotal];
+		prevSibling = new int[numNodesTotal];
+		stack = new int[numNodesTotal];
+		Arrays.fill(firstChild, -1);
+		Arrays.fill(nextSibling, -1);
+		Arrays.fill(prevSibling, -1);
+
+		// shift the lower bounds into the supplies
+		long[] excess = Arrays.copyOf(supply, numNodesTotal);
+		long maxCost = 0;
+		for (int a = 0; a < numArcs; a++)
+		{
+			cap[a] = (upper[a] >= INF) ? INF : upper[a] - lower[a];
+			excess[source[a]] -= lower[a];
+			excess[target[a]] += lower[a];
+			state[a] = STATE_LOWER;
+			maxCost = Math.max(maxCost, Math.abs(cost[a]));
+		}
+		long bigM = (maxCost + 1) * numNodesTotal;
+		cost = Arrays.copyOf(cost, numArcsTotal);
+		source = Arrays.copyOf(source, numArcsTotal);
+		target = Arrays.copyOf(target, numArcsTotal);
+		for (int v = 0; v < numNodes; v++)
+		{
+			int a = numArcs + v;
+			cap[a] = INF;
+			cost[a] = bigM;
+			state[a] = STATE_LOWER;
+			source[a] = v;
+			target[a] = root;
+		}
+
+		// build the forest given by the initial basis
+		int[] forestParent = new int[numNodes];
+		int[] forestArc = new int[numNodes];
+		int[] order = buildForest(forestParent, forestArc);
+
+		// compute the tree flows bottom-up, and cut arcs that would make the tree infeasible or not strongly feasible
+		for (int i = order.length - 1; i >= 0; i--)
+		{
+			int v = order[i];
+			int a = forestArc[v];
+			if (a < 0)
+			{
+				continue;
+			}
+			boolean up = (source[a] == v);
+			long f = up ? excess[v] : -excess[v];
+			boolean strong = (f > 0 || up) && (f < cap[a] || !up);
+			if (f < 0 || f > cap[a] || !strong)
+			{
+				forestArc[v] = -1;
+				forestParent[v] = -1;
+			}
+			else
+			{
+				flow[a] = f;
+				state[a] = STATE_TREE;
+				excess[forestParent[v]] += excess[v];
+			}
+		}
+
+		// connect the tree
+		for (int v : order)
+		{
+			if (forestArc[v] >= 0)
+			{
+				link(v, forestParent[v], forestArc[v], source[forestArc[v]] == v);
+			}
+			else
+			{
+				int a = numArcs + v;
+				if (excess[v] >= 0)
+				{
+					source[a] = v;
+					target[a] = root;
+					flow[a] = excess[v];
+				}
+				else
+				{
+					source[a] = root;
+					target[a] = v;
+					flow[a] = -excess[v];
+				}
+				state[a] = STATE_TREE;
+				link(v, root, a, source[a] == v);
+			}
+		}
+		parent[root] = -1;
+		pred[root] = -1;
+		depth[root] = 0;
+		pi[root] = 0;
+		updateSubtree(root);
+
+		nextArc = 0;
+		blockSize = Math.max(10, (int) Math.ceil(Math.sqrt(numArcsTotal)));
+	}
+
+	/**
+	 * Builds a forest from the initial basis, and returns the nodes such that parents come before their children
+	 */
+	private int[] buildForest(int[] forestParent, int[] forestArc)
+	{
+		Arrays.fill(forestParent, -1);
+		Arrays.fill(forestArc, -1);
+		int[] order = new int[numNodes];
+		if (initialBasis == null)
+		{
+			for (int v = 0; v < numNodes; v++)
+			{
+				order[v] = v;
+			}
+			return order;
+		}
+
+		// select the arcs that do not close a cycle
+		int[] component = new int[numNodes];
+		for (int v = 0; v < numNodes; v++)
+		{
+			component[v] = v;
+		}
+		int[] degree = new int[numNodes];
+		int[] selected = new int[initialBasis.length];
+		int numSelected = 0;
+		for (int a : initialBasis)
+		{
+			if (a < 0 || a >= numArcs)
+			{
+				continue;
+			}
+			int c1 = find(component, source[a]);
+			int c2 = find(component, target[a]);
+			if (c1 != c2)
+			{
+				component[c1] = c2;
+				selected[numSelected++] = a;
+				degree[source[a]]++;
+				degree[target[a]]++;
+			}
+		}
+
+		// adjacency lists of the forest
+		int[] start = new int[numNodes + 1];
+		for (int v = 0; v < numNodes; v++)
+		{
+			start[v + 1] = start[v] + degree[v];
+		}
+		int[] fill = Arrays.copyOf(start, numNodes);
+		int[] adjacent = new int[2 * numSelected];
+		for (int i = 0; i < numSelected; i++)
+		{
+			int a = selected[i];
+			adjacent[fill[source[a]]++] = a;
+			adjacent[fill[target[a]]++] = a;
+		}
+
+		// breadth first search from every unvisited node
+		boolean[] visited = new boolean[numNodes];
+		int size = 0;
+		for (int r = 0; r < numNodes; r++)
+		{
+			if (visited[r])
+			{
+				continue;
+			}
+			visited[r] = true;
+			int head = size;
+			order[size++] = r;
+			while (head < size)
+			{
+				int v = order[head++];
+				for (int i = start[v]; i < start[v + 1]; i++)
+				{
+					int a = adjacent[i];
+					int w = (source[a] == v) ? target[a] : source[a];
+					if (!visited[w])
+					{
+						visited[w] = true;
+						forestParent[w] = v;
+						forestArc[w] = a;
+						order[size++] = w;
+					}
+				}
+			}
+		}
+		return order;
+	}
+
+	private int find(int[] component, int v)
+	{
+		while (component[v] != v)
+		{
+			component[v] = component[component[v]];
+			v = component[v];
+		}
+		return v;
+	}
+
+	/**
+	 * Block search pricing: returns the most violating arc of the first block that contains a violating arc
+	 */
+	private int findEnteringArc()
+	{
+		int numArcsTotal = numArcs + numNodes;
+		long minViolation = 0;
+		int minArc = -1;
+		int count = 0;
+		for (int i = 0; i < numArcsTotal; i++)
+		{
+			int a = nextArc;
+			nextArc++;
+			if (nextArc == numArcsTotal)
+			{
+				nextArc = 0;
+			}
+			if (state[a] != STATE_TREE)
+			{
+				long violation = state[a] * (cost[a] + pi[source[a]] - pi[target[a]]);
+				if (violation < minViolation)
+				{
+					minViolation = violation;
+					minArc = a;
+				}
+			}
+			count++;
+			if (count == blockSize)
+			{
+				if (minArc >= 0)
+				{
+					return minArc;
+				}
+				count = 0;
+			}
+		}
+		return minArc;
+	}
+
+	/**
+	 * Pushes flow around the cycle of the entering arc, and updates the spanning tree
+	 */
+	private void pivot(int entering)
+	{
+		int first = source[entering];
+		int second = target[entering];
+		if (state[entering] == STATE_UPPER)
+		{
+			first = target[entering];
+			second = source[entering];
+		}
+
+		// find the apex of the cycle
+		int u = first;
+		int v = second;
+		while (u != v)
+		{
+			if (depth[u] > depth[v])
+			{
+				u = parent[u];
+			}
+			else if (depth[v] > depth[u])
+			{
+				v = parent[v];
+			}
+			else
+			{
+				u = parent[u];
+				v = parent[v];
+			}
+		}
+		int join = u;
+
+		// find the last blocking arc, traversing the cycle from the apex in the direction of the flow
+		int firstSideLength = 0;
+		for (int w = first; w != join; w = parent[w])
+		{
+			stack[firstSideLength++] = w;
+		}
+		long delta = INF;
+		int leavingNode = -1;
+		boolean leavingOnFirstSide = false;
+		for (int i = firstSideLength - 1; i >= 0; i--)
+		{
+			int w = stack[i];
+			int a = pred[w];
+			long residual = predUp[w] ? flow[a] : cap[a] - flow[a];
+			if (residual <= delta)
+			{
+				delta = residual;
+				leavingNode = w;
+				leavingOnFirstSide = true;
+			}
+		}
+		long residualEntering = (state[entering] == STATE_LOWER) ? cap[entering] - flow[entering] : flow[entering];
+		if (residualEntering <= delta)
+		{
+			delta = residualEntering;
+			leavingNode = -1;
+		}
+		for (int w = second; w != join; w = parent[w])
+		{
+			int a = pred[w];
+			long residual = predUp[w] ? cap[a] - flow[a] : flow[a];
+			if (residual <= delta)
+			{
+				delta = residual;
+				leavingNode = w;
+				leavingOnFirstSide = false;
+			}
+		}
+		if (delta >= INF)
+		{
+			throw new Error("Unbounded min cost flow problem");
+		}
+
+		// augment the flow
+		if (delta > 0)
+		{
+			flow[entering] += (state[entering] == STATE_LOWER) ? delta : -delta;
+			for (int w = first; w != join; w = parent[w])
+			{
+				flow[pred[w]] += predUp[w] ? -delta : delta;
+			}
+			for (int w = second; w != join; w = parent[w])
+			{
+				flow[pred[w]] += predUp[w] ? delta : -delta;
+			}
+		}
+
+		if (leavingNode < 0)
+		{
+			// the entering arc moves to its other bound
+			state[entering] = -state[entering];
+			return;
+		}
+
+		// update the states of the entering and leaving arc
+		int leaving = pred[leavingNode];
+		state[leaving] = (flow[leaving] == 0) ? STATE_LOWER : STATE_UPPER;
+		state[entering] = STATE_TREE;
+
+		// hang the subtree of the leaving node below the other end of the entering arc
+		int x = leavingOnFirstSide ? first : second;
+		int newParent = leavingOnFirstSide ? second : first;
+		int newArc = entering;
+		boolean newUp = (source[entering] == x);
+		while (true)
+		{
+			int oldParent = parent[x];
+			int oldArc = pred[x];
+			boolean oldUp = predUp[x];
+			unlink(x, oldParent);
+			link(x, newParent, newArc, newUp);
+			if (x == leavingNode)
+			{
+				break;
+			}
+			newParent = x;
+			newArc = oldArc;
+			newUp = !oldUp;
+			x = oldParent;
+		}
+		updateSubtree(leavingOnFirstSide ? first : second);
+	}
+
+	private void link(int child, int newParent, int arc, boolean up)
+	{
+		parent[child] = newParent;
+		pred[child] = arc;
+		predUp[child] = up;
+		int oldFirst = firstChild[newParent];
+		nextSibling[child] = oldFirst;
+		prevSibling[child] = -1;
+		if (oldFirst >= 0)
+		{
+			prevSibling[oldFirst] = child;
+		}
+		firstChild[newParent] = child;
+	}
+
+	private void unlink(int child, int oldParent)
+	{
+		int prev = prevSibling[child];
+		int next = nextSibling[child];
+		if (prev >= 0)
+		{
+			nextSibling[prev] = next;
+		}
+		else
+		{
+			firstChild[oldParent] = next;
+		}
+		if (next >= 0)
+		{
+			prevSibling[next] = prev;
+		}
+		nextSibling[child] = -1;
+		prevSibling[child] = -1;
+	}
+
+	/**
+	 * Recomputes the depths and potentials of all nodes in the subtree rooted at some node
+	 */
+	private void updateSubtree(int top)
+	{
+		int size = 0;
+		stack[size++] = top;
+		while (size > 0)
+		{
+			int v = stack[--size];
+			if (v != root)
+			{
+				int p = parent[v];
+				depth[v] = depth[p] + 1;
+				long c = cost[pred[v]];
+				pi[v] = predUp[v] ? pi[p] - c : pi[p] + c;
+			}
+			for (int w = firstChild[v]; w >= 0; w = nextSibling[w])
+			{
+				stack[size++] = w;
+			}
+		}
+	}
+
+	public boolean isFeasible()
+	{
+		return feasible;
+	}
+
+	public long getObjective()
+	{
+		return objective;
+	}
+
+	public long getFlow(int arc)
+	{
+		return flow[arc] + lower[arc];
+	}
+
+	public long getPotential(int node)
+	{
+		return pi[node];
+	}
+
+	/**
+	 * Returns the real arcs in the final spanning tree, which can be used to warm start a similar problem
+	 */
+	public int[] getBasis()
+	{
+		int count = 0;
+		for (int a = 0; a < numArcs; a++)
+		{
+			if (state[a] == STATE_TREE)
+			{
+				count++;
+			}
+		}
+		int[] basis = new int[count];
+		count = 0;
+		for (int a = 0; a < numArcs; a++)
+		{
+			if (state[a] == STATE_TREE)
+			{
+				basis[count++] = a;
+			}
+		}
+		return basis;
+	}
+
+	public int getNumberOfNodes()
+	{
+		return numNodes;
+	}
+
+	public int getNumberOfArcs()
+	{
+		return numArcs;
+	}
+
+	public int getPivots()
+	{
+		return pivots;
+	}
+}
@@ -87,6 +87,9 @@ public class Instance
 		ind = -1;
 		startHorizon = parentInst.startHorizon;
 		endHorizon = parentInst.endHorizon;
+		for(Trip t: trips) {
+			endHorizon = Math.max(endHorizon, t.getEndTime()+10); //retimed trips may end later
+		}
 		earliestStart = parentInst.earliestStart;
 		horizon = parentInst.horizon;
 		locations = new ArrayList<>(parentInst.locations);
@@ -137,6 +140,41 @@ public class Instance
 		determineStartAndEndLocations();
 	}
 
+	/**
+	 * Method that adds an anchor trip for a vehicle of the depot that is already in operation and is ready at the location
+	 * at the given time. The anchor starts at a new pseudo-location that can only be reached from the depot by a free
+	 * pull-out, and ends at the location without taking time. Hence, the anchor is always the first trip of a duty of
+	 * its depot, and the vehicle can depart from the location from the ready time on.
+	 */
+	public Trip addAnchor(Location depot, Location at, int readyTime, int id) {
+		Location pseudo = new Location(1, Integer.MAX_VALUE, numLocations);
+		for(Location l: locations) {
+			pseudo.addTimeTo(l, at.getTimeTo(l));
+		}
+		pseudo.addTimeTo(pseudo, 0);
+		pseudo.addTimeFrom(pseudo, 0);
+		pseudo.addTimeFrom(depot, 0);
+		locations.add(pseudo);
+		numLocations++;
+
+		int startTime = readyTime+maxDeviation;
+		Trip anchor = new Trip(id, pseudo, startTime, at, startTime);
+		trips = new ArrayList<>(trips);
+		trips.add(anchor);
+		Collections.sort(trips);
+		numTrips++;
+		endHorizon = Math.max(endHorizon, startTime+maxDeviation+10);
+		determineStartAndEndLocations();
+		return anchor;
+	}
+
+	/**
+	 * Method that returns a copy of the instance in which the trip is shifted to a new start time
+	 */
+	public Instance retimeTrip(Trip t, int newStartTime) {
+		return new TimetableChange().retimeTrip(t, newStartTime).apply(this);
+	}
+
 	public void readFile(File f) throws FileNotFoundException
 	{
 		Scanner sc = new Scanner(f);
@@ -4,6 +4,8 @@ import java.util.Map;
 
 public class Location 
 {
+	public final static int NO_CONNECTION = 10000; //travel time of locations that are not connected
+
 	private int type; // Depot = 0, station = 1
 	private int capacity;
 	private int index;
@@ -60,13 +62,25 @@ public class Location
 		timeFrom.put(from, time);
 	}
 	
+	/**
+	 * Method that returns the travel time, where a location that was added later (such as a pseudo-depot) may define the
+	 * times in both directions itself. Pairs without a travel time are not connected.
+	 */
 	public int getTimeTo(Location to) 
 	{
-		return timeTo.get(to);
+		Integer time = timeTo.get(to);
+		if(time==null) {
+			time = to.timeFrom.get(this);
+		}
+		return (time==null) ? NO_CONNECTION : time;
 	}	
 	
 	public int getTimeFrom(Location from) 
 	{
-		return timeFrom.get(from);
+		Integer time = timeFrom.get(from);
+		if(time==null) {
+			time = from.timeTo.get(this);
+		}
+		return (time==null) ? NO_CONNECTION : time;
 	}
 }
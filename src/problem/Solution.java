@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import ddd.DelayReplanner;
 import ddd.Duty;
+import ddd.ReplanResult;
 import ddd.TimedTrip;
 import ilog.concert.IloException;
 
@@ -114,6 +116,14 @@ public class Solution {
 		return driving;
 	}
 
+	/**
+	 * Method that re-plans this schedule after the trip is delayed until the given departure time, within the deadline
+	 * in seconds
+	 */
+	public ReplanResult replanDelay(Trip delayed, int earliestDeparture, double deadline) throws IloException {
+		return new DelayReplanner(inst, this).replan(delayed, earliestDeparture, deadline);
+	}
+
 	public List<TimedTrip> getTimedTrips() {
 		List<TimedTrip> ttList = new ArrayList<>();
 		for(Duty du: duties) {
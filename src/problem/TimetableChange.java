@@ -0,0 +1,93 @@
+package problem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class for a set of changes to the timetable of an instance: trips can be added, cancelled or retimed
+ */
+public class TimetableChange {
+	private List<Trip> added;
+	private Set<Trip> cancelled;
+	private Map<Trip, Integer> retimed; //trip -> new start time
+	private Map<Trip, Trip> replacements; //retimed trip -> trip in the changed instance
+
+	public TimetableChange() {
+		added = new ArrayList<>();
+		cancelled = new LinkedHashSet<>();
+		retimed = new LinkedHashMap<>();
+		replacements = new LinkedHashMap<>();
+	}
+
+	public TimetableChange addTrip(Trip t) {
+		added.add(t);
+		return this;
+	}
+
+	public TimetableChange cancelTrip(Trip t) {
+		cancelled.add(t);
+		return this;
+	}
+
+	/**
+	 * Method that shifts the trip to a new start time, keeping its trip time
+	 */
+	public TimetableChange retimeTrip(Trip t, int newStartTime) {
+		retimed.put(t, newStartTime);
+		return this;
+	}
+
+	/**
+	 * Method that returns the instance after the changes, where retimed trips are replaced by new trips with the same id
+	 */
+	public Instance apply(Instance inst) {
+		replacements.clear();
+		for(Trip t: retimed.keySet()) {
+			int start = retimed.get(t);
+			replacements.put(t, new Trip(t.getID(), t.getStartLocation(), start, t.getEndLocation(), start+t.getTripTime()));
+		}
+		List<Trip> trips = new ArrayList<>();
+		for(Trip t: inst.getTrips()) {
+			Trip updated = getUpdated(t);
+			if(updated!=null) {
+				trips.add(updated);
+			}
+		}
+		trips.addAll(added);
+		Collections.sort(trips);
+		return new Instance(inst, trips);
+	}
+
+	/**
+	 * Method that returns the trip in the changed instance, or null if it is cancelled. The changes have to be applied first.
+	 */
+	public Trip getUpdated(Trip t) {
+		if(cancelled.contains(t)) {
+			return null;
+		}
+		if(replacements.containsKey(t)) {
+			return replacements.get(t);
+		}
+		return t;
+	}
+
+	public List<Trip> getAdded() {
+		return added;
+	}
+
+	public Set<Trip> getCancelled() {
+		return cancelled;
+	}
+
+	public Map<Trip, Integer> getRetimed() {
+		return retimed;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty()&&cancelled.isEmpty()&&retimed.isEmpty();
+	}
+}
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 
 import bnp.BranchAndPrice;
+import bnp.DualStabilizer;
 import ilog.concert.IloException;
 import problem.Instance;
 
@@ -13,10 +14,12 @@ public class MainBNP {
 		int nrTrips = 250;
 		int maxDev = 1;
 		int timeLimit = 300;
+		//stabilisation of the duals: none, smoothing, or smoothing with a box
+		String stabilization = (args.length>0) ? args[0] : "none";
 		
-		String prefix = "bnp-"+nrTrips+"-"+maxDev;
+		String prefix = "bnp-"+nrTrips+"-"+maxDev+(stabilization.equals("none") ? "" : "-"+stabilization);
 		PrintWriter pw = new PrintWriter("results/"+prefix+".txt");
-		pw.println("instance,root,lb,ub,cpuTotal,cpuRoot,cpuMaster,cpuPricing,nodes");
+		pw.println("instance,root,lb,ub,cpuTotal,cpuRoot,cpuMaster,cpuMasterSetup,cpuPricing,nodes,iterationsRoot,prunedByBound,earlyTerminations");
 		//iterate over 10 instances of this type and solve them
 		for(int i = 0; i<10; i++) {
 			String instanceName = "GD-4-"+nrTrips+"-"+i;
@@ -25,9 +28,15 @@ public class MainBNP {
 			
 			System.out.println(" Start BNP on instance "+i);
 			BranchAndPrice cG = new BranchAndPrice(inst, timeLimit);
+			if(stabilization.equals("smoothing")) {
+				cG.setStabilizer(new DualStabilizer(0.5, true, 0, 0, inst.getNumTrips()));
+			} else if(stabilization.equals("box")) {
+				cG.setStabilizer(new DualStabilizer(0.5, true, 10, 1, inst.getNumTrips()));
+			}
 			cG.branchAndPrice();			
 			pw.println(instanceName+","+cG.getRootBound()+","+cG.getLB()+","+cG.getUB()+","+cG.getTimeTotal()
-			+","+cG.getTimeRoot()+","+cG.getTimeMaster()+","+cG.getTimePricing()+","+cG.getNodes());
+			+","+cG.getTimeRoot()+","+cG.getTimeMaster()+","+cG.getTimeMasterSetup()+","+cG.getTimePricing()+","+cG.getNodes()+","+cG.getIterationsRoot()
+			+","+cG.getNrPrunedByBound()+","+cG.getNrEarlyTerminations());
 			pw.flush();
 		}
 		pw.close();
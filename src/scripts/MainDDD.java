@@ -25,6 +25,13 @@ public class MainDDD {
 		boolean dyn_gap = true;
 		boolean aggregate = true;
 		int iterLimit = Integer.MAX_VALUE;
+		boolean branchAndCut = false;
+		int poolSolutions = 0;
+		boolean pipelined = false;
+		boolean concurrentUB = false;
+		boolean useFlowBound = false;
+		boolean useRepairHeuristic = false;
+		boolean useLocalSearch = false;
 
 		String suffix = "DDD-"+nrTrips+"-"+maxDev+"-"+dyn_gap+"-"+deadhead_type+"-"+refiningStrat+"-"+optimize_postprocessing;
 		PrintWriter pw = new PrintWriter("results/"+suffix+".txt");
@@ -36,6 +43,13 @@ public class MainDDD {
 			File fileDDD = new File("dataEUC/"+instanceName+".txt");
 			Instance inst = new Instance(fileDDD, maxDev, i);
 			Solver_DDD solver = new Solver_DDD(inst,dyn_gap,deadhead_type,refiningStrat,optimize_postprocessing,timeLimit,aggregate,iterLimit);
+			solver.setBranchAndCut(branchAndCut);
+			solver.setPoolSolutions(poolSolutions);
+			solver.setPipelined(pipelined);
+			solver.setConcurrentUB(concurrentUB);
+			solver.setUseFlowBound(useFlowBound);
+			solver.setUseRepairHeuristic(useRepairHeuristic);
+			solver.setUseLocalSearch(useLocalSearch);
 			
 			MDVSP.setSeed(1);
 			solver.solve();
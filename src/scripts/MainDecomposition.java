@@ -0,0 +1,41 @@
+package scripts;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+import ddd.DecompositionSolver;
+import ilog.concert.IloException;
+import problem.Instance;
+
+public class MainDecomposition {
+
+	public static void main(String[] args) throws FileNotFoundException, IloException {
+		int maxDev = 3;
+		int numClusters = 4;
+		int timeLimit = 300;
+		int overlap = 30;
+		boolean useDDD = true;
+		boolean aggregate = true;
+
+		String instanceName = "GD-2-4140";
+		File file = new File("dataEUC/"+instanceName+".txt");
+		Instance inst = new Instance(file, maxDev, 0);
+
+		PrintWriter pw = new PrintWriter("results/decomposition-"+instanceName+"-"+maxDev+".txt");
+		pw.println("instance,partitioning,stitched,ub,cpuClusters,cpuBorders,cpu");
+		for(int partitioning: new int[] {DecompositionSolver.BY_DEPOT, DecompositionSolver.BY_TIME}) {
+			DecompositionSolver solver = new DecompositionSolver(inst, numClusters, partitioning, useDDD, aggregate,
+					timeLimit, overlap);
+			solver.solve();
+			if(solver.getSolution()==null) {
+				continue;
+			}
+			pw.println(instanceName+","+partitioning+","+solver.getStitchedCosts()+","+solver.getSolution().getCosts()
+					+","+solver.getCpuClusters()+","+solver.getCpuBorders()+","+solver.getCpu());
+			pw.flush();
+		}
+		pw.close();
+	}
+
+}
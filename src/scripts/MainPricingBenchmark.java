@@ -0,0 +1,81 @@
+package scripts;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import bnp.ConnectionNetwork;
+import bnp.ShortestPathWithResources;
+import problem.Instance;
+import problem.Location;
+import problem.Trip;
+
+/**
+ * Benchmark of the pricing problem. The duals are generated such that a large part of the trips is attractive, similar
+ * to the first column generation iterations, and every depot is priced a number of times with perturbed duals.
+ */
+public class MainPricingBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		int maxDev = 3;
+		int iterations = 5;
+		boolean bidirectional = args.length>0&&args[0].equals("bidirectional");
+		ForkJoinPool labelingPool = (args.length>0&&args[0].equals("waves")) ? new ForkJoinPool() : null;
+
+		PrintWriter pw = new PrintWriter("results/pricing-benchmark-"+maxDev+(bidirectional ? "-bidirectional" : "")+((labelingPool!=null) ? "-waves" : "")+".txt");
+		pw.println("instance,trips,iterations,cpuPricing,cpuPerIteration,bestRedCost,extensions,pruned");
+		for(int nrTrips: new int[] {500, 750, 1000}) {
+			for(int i = 0; i<10; i++) {
+				String instanceName = "GD-4-"+nrTrips+"-"+i;
+				File file = new File("dataEUC/"+instanceName+".txt");
+				Instance inst = new Instance(file, maxDev, i);
+
+				Map<Location,ConnectionNetwork> networks = new LinkedHashMap<>();
+				for(Location depot: inst.getDepots()) {
+					networks.put(depot, new ConnectionNetwork(inst, depot));
+				}
+				Random random = new Random(i);
+				double cpu = 0;
+				double bestRedCost = 0;
+				long extensions = 0;
+				long pruned = 0;
+				for(int it = 0; it<iterations; it++) {
+					Map<Trip,Double> duals = new LinkedHashMap<>();
+					for(Trip t: inst.getTrips()) {
+						Location depot = inst.getDepots().get(0);
+						int single = 2*Instance.FIXED_COST+depot.getTimeTo(t.getStartLocation())
+								+depot.getTimeFrom(t.getEndLocation());
+						duals.put(t, (0.2+0.2*random.nextDouble())*single);
+					}
+					for(Location depot: inst.getDepots()) {
+						ConnectionNetwork cN = networks.get(depot);
+						cN.updateCosts(duals, true);
+						ShortestPathWithResources pricing = new ShortestPathWithResources(cN, maxDev);
+						pricing.setBidirectional(bidirectional);
+						pricing.setLabelingPool(labelingPool);
+						long clock = System.nanoTime();
+						pricing.computeDistances();
+						cpu += 1e-9*(System.nanoTime()-clock);
+						bestRedCost = Math.min(bestRedCost, pricing.getDistance());
+						extensions += pricing.getNumExtensions();
+						pruned += pricing.getNumPruned();
+					}
+				}
+				System.out.println(instanceName+": "+cpu/iterations+"s per iteration, best reduced cost "+bestRedCost
+						+", "+pruned+" of "+extensions+" extensions pruned");
+				pw.println(instanceName+","+nrTrips+","+iterations+","+cpu+","+cpu/iterations+","+bestRedCost+","+extensions
+						+","+pruned);
+				pw.flush();
+			}
+		}
+		pw.close();
+		if(labelingPool!=null) {
+			labelingPool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package scripts;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+import ddd.RollingHorizonSolver;
+import ilog.concert.IloException;
+import problem.Instance;
+
+public class MainRollingHorizon {
+
+	public static void main(String[] args) throws FileNotFoundException, IloException {
+		int nrTrips = 1000;
+		int maxDev = 3;
+		int windowLength = 240;
+		int step = 120;
+		int windowTimeLimit = 300;
+		boolean aggregate = true;
+
+		String prefix = "rolling-"+nrTrips+"-"+maxDev+"-"+windowLength+"-"+step;
+		PrintWriter pw = new PrintWriter("results/"+prefix+".txt");
+		pw.println("instance,ub,windows,maxWindowTrips,maxWindowCpu,cpu");
+		for(int i = 0; i<10; i++) {
+			String instanceName = "GD-4-"+nrTrips+"-"+i;
+			File file = new File("dataEUC/"+instanceName+".txt");
+			Instance inst = new Instance(file, maxDev, i);
+
+			RollingHorizonSolver solver = new RollingHorizonSolver(inst, windowLength, step, windowTimeLimit, aggregate);
+			solver.solve();
+			pw.println(instanceName+","+solver.getSolution().getCosts()+","+solver.getNumWindows()+","
+					+solver.getMaxWindowTrips()+","+solver.getMaxWindowCpu()+","+solver.getCpu());
+			pw.flush();
+		}
+		pw.close();
+	}
+
+}